@@ -3,26 +3,52 @@ import static config.Config.Solver.CDCL_NClause;
 import static config.Config.Solver.CDCL_Random;
 import static config.Config.Solver.CDCL_TwoClause;
 import static config.Config.Solver.CDCL_VSDIS;
+import static config.Config.Solver.CUBE_AND_CONQUER;
+import static config.Config.Solver.PORTFOLIO;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import callback.ProofOutput;
+import checker.DratChecker;
 import config.Config;
+import datastruct.IntList;
 import db.ClauseDB;
 import parser.DimacsParser;
+import parser.DratParser;
+import preprocess.BlockedClauseEliminator;
+import preprocess.BoundedVariableAdder;
+import preprocess.EquivalenceSubstitution;
+import preprocess.Subsumer;
+import preprocess.VariableEliminator;
 import solver.CDCLSolver;
+import solver.CubeAndConquerSolver;
 import solver.ISolver;
 import solver.NClauseSolver;
+import solver.PortfolioSolver;
 import solver.RandomSolver;
 import solver.TwoClauseSolver;
+import solver.UnsatCoreExtractor;
 import solver.VSDISSolver;
-import util.FileUtil;
 import util.SolverUtil;
 
 public class SatSolver {
 
     private static final String USAGE_MSG
             = "Usage: <Solver type> <CNF file name> <Number of iterations> [Logging] [Statistic log output] "
-            + "[Result output]";
+            + "[Result output] [--phase=POSITIVE|SAVING|REPHASING] "
+            + "[--restart=NONE|LUBY|GLUCOSE] [--clause-store=HEAP|DIRECT] "
+            + "[--elimination=true|false] [--subsumption=true|false] "
+            + "[--equivalences=true|false] [--probing=true|false] [--blocked-clauses=true|false] "
+            + "[--variable-addition=true|false] [--sharing=true|false] [--cube-depth=N] "
+            + "[--parse-threads=N] [--core=NONE|EXTRACT|MINIMIZE] [--proof=FILE] [--proof-format=TEXT|BINARY] "
+            + "[--check-proof=true|false]";
+    private static final String UNSAT_RESULT = "UNSAT";
+    private static final String INVALID_OPTION_MSG = "Invalid option passed: %s";
+    private static final String PROOF_UNSUPPORTED_MSG = "Proof output is not supported by %s";
     private static final String INVALID_TYPE_MSG = "Invalid type passed: %s\nAvailable solvers:\n- CDCL_Chaff\n- CDCL_TwoClause";
 
     private ClauseDB clauseDb;
@@ -42,10 +68,146 @@ public class SatSolver {
             return CDCL_Random;
         } else if (strType.equals(CDCL_VSDIS.toString())) {
             return CDCL_VSDIS;
+        } else if (strType.equals(PORTFOLIO.toString())) {
+            return PORTFOLIO;
+        } else if (strType.equals(CUBE_AND_CONQUER.toString())) {
+            return CUBE_AND_CONQUER;
         }
         return null;
     }
 
+    /**
+     * Apply options of the form {@code --name=value} to {@code Config}.
+     * @param args command line arguments
+     * @return remaining positional arguments, or null if an option is invalid
+     */
+    private static String[] parseOptions(String[] args) {
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            String name = separator == -1 ? arg.substring(2) : arg.substring(2, separator);
+            String value = separator == -1 ? "" : arg.substring(separator + 1);
+            try {
+                switch (name) {
+                    case "phase":
+                        Config.phase = Config.Phase.valueOf(value);
+                        break;
+                    case "restart":
+                        Config.restart = Config.Restart.valueOf(value);
+                        break;
+                    case "clause-store":
+                        Config.clauseStore = Config.ClauseStore.valueOf(value);
+                        break;
+                    case "elimination":
+                        Config.variableElimination = parseBoolean(value);
+                        break;
+                    case "subsumption":
+                        Config.subsumption = parseBoolean(value);
+                        break;
+                    case "equivalences":
+                        Config.equivalences = parseBoolean(value);
+                        break;
+                    case "probing":
+                        Config.probing = parseBoolean(value);
+                        break;
+                    case "blocked-clauses":
+                        Config.blockedClauseElimination = parseBoolean(value);
+                        break;
+                    case "variable-addition":
+                        Config.variableAddition = parseBoolean(value);
+                        break;
+                    case "sharing":
+                        Config.clauseSharing = parseBoolean(value);
+                        break;
+                    case "proof":
+                        Config.proofOutput = value;
+                        break;
+                    case "proof-format":
+                        Config.proofFormat = Config.ProofFormat.valueOf(value);
+                        break;
+                    case "check-proof":
+                        Config.checkProof = parseBoolean(value);
+                        break;
+                    case "core":
+                        Config.unsatCore = Config.Core.valueOf(value);
+                        break;
+                    case "cube-depth":
+                        Config.cubeDepth = Integer.parseInt(value);
+                        if (Config.cubeDepth < 0) {
+                            throw new IllegalArgumentException(value);
+                        }
+                        break;
+                    case "parse-threads":
+                        Config.parseThreads = Integer.parseInt(value);
+                        if (Config.parseThreads < 0) {
+                            throw new IllegalArgumentException(value);
+                        }
+                        break;
+                    default:
+                        System.out.println(String.format(INVALID_OPTION_MSG, arg));
+                        return null;
+                }
+            } catch (IllegalArgumentException e) {
+                System.out.println(String.format(INVALID_OPTION_MSG, arg));
+                return null;
+            }
+        }
+        return positional.toArray(new String[0]);
+    }
+
+    private static boolean parseBoolean(String value) {
+        if (!value.equals("true") && !value.equals("false")) {
+            throw new IllegalArgumentException(value);
+        }
+        return value.equals("true");
+    }
+
+    /**
+     * Simplify the parsed CNF before solving.
+     */
+    private void preprocess() {
+        if (Config.equivalences) {
+            int substituted = new EquivalenceSubstitution(clauseDb).substitute();
+            if (Config.logging == Config.Logging.VERBOSE) {
+                System.out.println(String.format("Substituted %d equivalent variables", substituted));
+            }
+        }
+        if (Config.subsumption) {
+            Subsumer subsumer = new Subsumer(clauseDb);
+            subsumer.simplifyClauses();
+            if (Config.logging == Config.Logging.VERBOSE) {
+                System.out.println(String.format("Subsumed %d clauses, strengthened %d clauses",
+                        subsumer.getSubsumedCount(), subsumer.getStrengthenedCount()));
+            }
+        }
+        if (Config.blockedClauseElimination) {
+            int removed = new BlockedClauseEliminator(clauseDb).eliminate();
+            if (Config.logging == Config.Logging.VERBOSE) {
+                System.out.println(String.format("Removed %d blocked clauses", removed));
+            }
+        }
+        if (Config.variableAddition) {
+            int clauses = clauseDb.getClauseReferences().size();
+            int added = new BoundedVariableAdder(clauseDb).addVariables();
+            if (Config.logging == Config.Logging.VERBOSE) {
+                System.out.println(String.format("Added %d variables, clauses: %d -> %d", added, clauses,
+                        clauseDb.getClauseReferences().size()));
+            }
+        }
+        if (Config.variableElimination) {
+            int clauses = clauseDb.getClauseReferences().size();
+            int eliminated = new VariableEliminator(clauseDb).eliminate();
+            if (Config.logging == Config.Logging.VERBOSE) {
+                System.out.println(String.format("Eliminated %d variables, clauses: %d -> %d", eliminated, clauses,
+                        clauseDb.getClauseReferences().size()));
+            }
+        }
+    }
+
     private ISolver getSolver(Config.Solver solverType) {
         switch (solverType) {
             case CDCL_Chaff:
@@ -58,6 +220,10 @@ public class SatSolver {
                 return new RandomSolver(clauseDb);
             case CDCL_VSDIS:
                 return new VSDISSolver(clauseDb);
+            case PORTFOLIO:
+                return new PortfolioSolver(clauseDb);
+            case CUBE_AND_CONQUER:
+                return new CubeAndConquerSolver(clauseDb);
             default:
                 return null;
         }
@@ -73,23 +239,45 @@ public class SatSolver {
 
         String filePath = args[1];
 
-        String fileContent = FileUtil.getFileString(filePath);
+        File file = new File(filePath);
 
-        if (fileContent == null) {
+        if (!file.exists() || file.isDirectory()) {
             System.out.println("File does not exist.");
             return;
         }
 
         DimacsParser dp = new DimacsParser(clauseDb);
-        boolean parseSuccessful = dp.parse(fileContent);
+        boolean parseSuccessful = dp.parse(filePath);
 
         if (!parseSuccessful) {
             System.out.println("cnf file not in the correct format");
             return;
         }
 
+        ProofOutput proof = null;
+        if (Config.proofOutput != null) {
+            // Parallel solvers work on copies of the database, which do not write to the proof
+            if (solverType == PORTFOLIO || solverType == CUBE_AND_CONQUER) {
+                System.out.println(String.format(PROOF_UNSUPPORTED_MSG, solverType));
+                return;
+            }
+            proof = new ProofOutput(Config.proofOutput, Config.proofFormat == Config.ProofFormat.BINARY);
+            try {
+                proof.initialize();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            clauseDb.setProofOutput(proof);
+        }
+
+        // Preprocessing removes and rewrites clauses, so the core is taken from a copy of the parsed CNF
+        ClauseDB original = Config.unsatCore == Config.Core.NONE ? null : new ClauseDB(clauseDb);
+        preprocess();
+
         ISolver solver = getSolver(solverType);
         if (solver == null) {
+            closeProof(proof);
             return;
         }
         int numberOfIterations =  Integer.parseInt(args[2]);
@@ -97,7 +285,11 @@ public class SatSolver {
         try {
             if (args.length >= 4) {
                 solver.setStatisticsOutput(args[3]);
-                solver.logStatistics(new String[]{"Iteration", "Time (s)", "Pick Branching Variable count"});
+                List<String> header = new ArrayList<>(
+                        Arrays.asList("Iteration", "Time (s)", "Pick Branching Variable count"));
+                header.addAll(solver.getStatistics().keySet());
+                header.add("Clause DB bytes");
+                solver.logStatistics(header.toArray(new String[0]));
             }
 
             if (args.length >= 5) {
@@ -105,21 +297,32 @@ public class SatSolver {
             }
         } catch (IOException e) {
             e.printStackTrace();
+            closeProof(proof);
             return;
         }
 
+        boolean unsatisfiable = false;
         for (int i = 0; i < numberOfIterations; ++i) {
             long time = System.nanoTime();
             String result = solver.evaluate();
             long totalTime = System.nanoTime() - time;
             if (Config.logging == Config.Logging.VERBOSE) {
                 System.out.println("Total time: " + SolverUtil.millisecToString(totalTime));
+                solver.getStatistics().forEach((name, value) -> System.out.println(name + ": " + value));
+                System.out.println("Clause DB bytes: " + solver.getUsedBytes());
                 System.out.println("Pick branching variable count: " + solver.getPickBranchingVariableCount());
                 System.out.println(result);
             }
+            unsatisfiable = result.equals(UNSAT_RESULT);
+            if (i == 0 && original != null && unsatisfiable) {
+                printUnsatCore(original);
+            }
             try {
-                String[] stat = new String[]{String.valueOf(i + 1), SolverUtil.millisecToString(totalTime), String.valueOf(solver.getPickBranchingVariableCount())};
-                solver.logStatistics(stat);
+                List<String> stat = new ArrayList<>(Arrays.asList(String.valueOf(i + 1),
+                        SolverUtil.millisecToString(totalTime), String.valueOf(solver.getPickBranchingVariableCount())));
+                solver.getStatistics().values().forEach(value -> stat.add(String.valueOf(value)));
+                stat.add(String.valueOf(solver.getUsedBytes()));
+                solver.logStatistics(stat.toArray(new String[0]));
                 solver.writeResult(String.format("%d\n", i + 1));
                 solver.writeResult(result);
             } catch (IOException e) {
@@ -134,9 +337,83 @@ public class SatSolver {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        closeProof(proof);
+        if (proof != null && Config.checkProof && unsatisfiable) {
+            checkProof(filePath, Config.proofOutput);
+        }
+    }
+
+    /**
+     * Finish writing the proof.
+     * @param proof proof output, or null if no proof is written
+     */
+    private static void closeProof(ProofOutput proof) {
+        if (proof == null) {
+            return;
+        }
+        try {
+            proof.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (Config.logging == Config.Logging.VERBOSE) {
+            System.out.println(String.format("Proof: %d clauses added, %d deleted", proof.getAddedCount(),
+                    proof.getDeletedCount()));
+        }
+    }
+
+    /**
+     * Print an unsatisfiable core of the parsed CNF in DIMACS format.
+     * @param original clause database of the CNF before preprocessing
+     */
+    private static void printUnsatCore(ClauseDB original) {
+        long time = System.nanoTime();
+        UnsatCoreExtractor extractor = new UnsatCoreExtractor(original);
+        IntList core = extractor.extract(Config.unsatCore == Config.Core.MINIMIZE);
+        if (core == null || Config.logging == Config.Logging.NONE) {
+            return;
+        }
+        System.out.println(String.format("UNSAT core: %d of %d clauses, %d solver calls, %s", core.size(),
+                original.getClauseReferences().size(), extractor.getCallCount(),
+                SolverUtil.millisecToString(System.nanoTime() - time)));
+        System.out.print(extractor.coreToString(core));
+    }
+
+    /**
+     * Check a DRAT proof of the CNF and print the outcome.
+     * @param filePath path of the CNF file
+     * @param proofPath path of the proof
+     */
+    private static void checkProof(String filePath, String proofPath) {
+        ClauseDB db = new ClauseDB();
+        File proofFile = new File(proofPath);
+        if (!new DimacsParser(db).parse(filePath) || !proofFile.exists() || proofFile.isDirectory()) {
+            System.out.println("Proof could not be read");
+            return;
+        }
+        DratChecker checker = new DratChecker(db);
+        if (!new DratParser(checker).parse(proofPath)) {
+            System.out.println("Proof not in the correct format");
+            return;
+        }
+        boolean verified = checker.check();
+        if (Config.logging == Config.Logging.VERBOSE) {
+            System.out.println(String.format("Checked %d of %d lemmas in %d rounds, %s, %.0f lemmas/s",
+                    checker.getCheckedCount(), checker.getLemmaCount(), checker.getRoundCount(),
+                    SolverUtil.millisecToString(checker.getCheckTime()), checker.getLemmasPerSecond()));
+            System.out.println(String.format("Proof core: %d clauses, %d deletions ignored",
+                    checker.getCoreSize(), checker.getIgnoredDeletionCount()));
+        }
+        System.out.println(verified ? "Proof verified"
+                : String.format("Proof check failed at lemma %d", checker.getFailedLemma() + 1));
     }
 
     public static void main(String[] args) {
+        args = parseOptions(args);
+        if (args == null) {
+            return;
+        }
         if (args.length < 3) {
             System.out.println(USAGE_MSG);
             return;
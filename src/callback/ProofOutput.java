@@ -0,0 +1,217 @@
+package callback;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a DRAT proof, as text or in the binary encoding of drat-trim. Clauses are encoded into a buffer on the
+ * calling thread, and full buffers are written to a {@code FileChannel} by a background thread while the caller fills
+ * the next one, so the solver only waits for the disk when every buffer is in flight.
+ * <p>
+ * Literals are in DIMACS notation. Unlike the other outputs, the proof is written to the path as given, so that it can
+ * be passed to a checker together with the CNF.
+ */
+public class ProofOutput {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int BUFFER_COUNT = 4;
+
+    /**
+     * Most bytes written for one literal in either encoding, including its separator.
+     */
+    private static final int MAX_LITERAL_BYTES = 12;
+
+    private String outputPath;
+    private boolean binary;
+    private FileChannel channel;
+    private ExecutorService writer;
+    private BlockingQueue<ByteBuffer> freeBuffers;
+    private ByteBuffer buffer;
+    private byte[] digits;
+
+    /**
+     * First error of the background writer, reported by {@code close}.
+     */
+    private volatile IOException error;
+
+    private long addedCount;
+    private long deletedCount;
+
+    public ProofOutput(String outputPath, boolean binary) {
+        this.outputPath = outputPath;
+        this.binary = binary;
+        digits = new byte[10];
+    }
+
+    public void initialize() throws IOException {
+        channel = FileChannel.open(Paths.get(outputPath), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        writer = Executors.newSingleThreadExecutor();
+        freeBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+        for (int i = 0; i < BUFFER_COUNT; ++i) {
+            freeBuffers.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        }
+        buffer = freeBuffers.poll();
+    }
+
+    /**
+     * Write a clause added to the formula.
+     * @param literals literals of the clause
+     * @param size number of literals
+     */
+    public void add(int[] literals, int size) {
+        if (binary) {
+            ensureRemaining(1);
+            buffer.put((byte) 'a');
+        }
+        writeLiterals(literals, size);
+        ++addedCount;
+    }
+
+    /**
+     * Write a clause deleted from the formula.
+     * @param literals literals of the clause
+     * @param size number of literals
+     */
+    public void delete(int[] literals, int size) {
+        ensureRemaining(2);
+        buffer.put((byte) 'd');
+        if (!binary) {
+            buffer.put((byte) ' ');
+        }
+        writeLiterals(literals, size);
+        ++deletedCount;
+    }
+
+    public long getAddedCount() {
+        return addedCount;
+    }
+
+    public long getDeletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * Write the remaining buffer, wait for the background writer and close the file.
+     * @throws IOException if writing the proof failed
+     */
+    public void close() throws IOException {
+        submit();
+        writer.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (writer.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void writeLiterals(int[] literals, int size) {
+        for (int i = 0; i < size; ++i) {
+            ensureRemaining(MAX_LITERAL_BYTES);
+            if (binary) {
+                putBinary(literals[i]);
+            } else {
+                putText(literals[i]);
+                buffer.put((byte) ' ');
+            }
+        }
+        ensureRemaining(2);
+        if (binary) {
+            buffer.put((byte) 0);
+        } else {
+            buffer.put((byte) '0');
+            buffer.put((byte) '\n');
+        }
+    }
+
+    /**
+     * Put a literal as a variable-length unsigned number, 2 * variable plus 1 if negative, in groups of 7 bits from
+     * the lowest, with the high bit set on all but the last byte.
+     * @param literal literal in DIMACS notation
+     */
+    private void putBinary(int literal) {
+        int value = 2 * Math.abs(literal) + (literal < 0 ? 1 : 0);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void putText(int literal) {
+        if (literal < 0) {
+            buffer.put((byte) '-');
+            literal = -literal;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + literal % 10);
+            literal /= 10;
+        } while (literal != 0);
+        while (count > 0) {
+            buffer.put(digits[--count]);
+        }
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() < bytes) {
+            submit();
+            buffer = takeFreeBuffer();
+        }
+    }
+
+    /**
+     * Hand the current buffer to the background writer, which returns it to the free buffers once written.
+     */
+    private void submit() {
+        ByteBuffer full = buffer;
+        full.flip();
+        writer.execute(() -> {
+            try {
+                while (full.hasRemaining() && error == null) {
+                    channel.write(full);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            full.clear();
+            freeBuffers.add(full);
+        });
+    }
+
+    private ByteBuffer takeFreeBuffer() {
+        boolean interrupted = false;
+        ByteBuffer free;
+        while (true) {
+            try {
+                free = freeBuffers.take();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return free;
+    }
+}
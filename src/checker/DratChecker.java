@@ -0,0 +1,627 @@
+package checker;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import datastruct.ClauseArena;
+import datastruct.ImplicationGraph;
+import datastruct.IntList;
+import db.ClauseDB;
+import util.LiteralUtil;
+
+/**
+ * Checks DRAT proofs of unsatisfiability backwards. Every lemma of the proof must follow from the clauses present
+ * when it is added, by reverse unit propagation or as a resolution asymmetric tautology on its first literal. Only
+ * lemmas that the empty clause depends on are checked: the empty clause is marked first, and checking a marked lemma
+ * marks the clauses its conflict was derived from. Propagation prefers marked clauses, so that checks reuse the
+ * clauses already in the core instead of pulling in new ones.
+ * <p>
+ * Lemmas are checked in rounds. All lemmas marked but not checked yet are independent of each other, so a round
+ * checks them in parallel on a fork-join pool, and the clauses they depend on are marked when the round is over. Each
+ * pool thread keeps its own watched literals over all clauses of the proof, with the two watched literals at the
+ * front of each clause as in the solver's propagator. A clause is only propagated at the steps of the proof where it
+ * is present, so the same watches serve every lemma.
+ */
+public class DratChecker {
+    private static final int NOT_DELETED = Integer.MAX_VALUE;
+    private static final int NO_REASON = ClauseArena.NO_CLAUSE;
+
+    /**
+     * Literals of all clauses, original clauses first and then lemmas in proof order. Clause {@code c} has the
+     * literals from {@code starts[c]} to {@code starts[c + 1]}.
+     */
+    private IntList literals;
+    private IntList starts;
+
+    /**
+     * Step of the proof at which each clause was added, -1 for original clauses, and at which it was deleted.
+     */
+    private IntList addedSteps;
+    private IntList deletedSteps;
+
+    /**
+     * Clauses by a hash of their literals that does not depend on literal order, to find deleted clauses.
+     */
+    private Map<Long, IntList> clausesByHash;
+    private IntList units;
+    private int originalCount;
+    private int numberOfVariables;
+    private int step;
+    private boolean concluded;
+    private int ignoredDeletionCount;
+
+    /**
+     * Clauses containing each literal, indexed by literal, for resolution asymmetric tautology checks.
+     */
+    private IntList[] occurrences;
+
+    /**
+     * Clauses that the empty clause depends on, as found so far. A lemma is checked in the round after it is marked.
+     */
+    private boolean[] marked;
+    private AtomicInteger failedLemma;
+    private ThreadLocal<LemmaChecker> checkers;
+    private int parallelism;
+
+    private int checkedCount;
+    private int roundCount;
+    private long checkTime;
+
+    /**
+     * Create a checker for proofs of a CNF.
+     * @param db clause database of the CNF as parsed, before preprocessing
+     */
+    public DratChecker(ClauseDB db) {
+        literals = new IntList();
+        starts = new IntList();
+        starts.add(0);
+        addedSteps = new IntList();
+        deletedSteps = new IntList();
+        clausesByHash = new HashMap<>();
+        units = new IntList();
+        parallelism = Runtime.getRuntime().availableProcessors();
+
+        ClauseArena arena = db.getArena();
+        IntList references = db.getClauseReferences();
+        int[] clause = new int[16];
+        for (int i = 0; i < references.size(); ++i) {
+            int cref = references.get(i);
+            int size = arena.size(cref);
+            if (clause.length < size) {
+                clause = new int[size];
+            }
+            for (int k = 0; k < size; ++k) {
+                int literal = arena.literal(cref, k);
+                int variable = Integer.parseInt(db.getVariableName(LiteralUtil.getVariable(literal)));
+                clause[k] = LiteralUtil.isPositive(literal) ? variable : -variable;
+            }
+            addClause(clause, size, -1);
+        }
+        originalCount = addedSteps.size();
+    }
+
+    /**
+     * Add a lemma of the proof. Steps after the empty clause are ignored.
+     * @param clause literals of the lemma in DIMACS notation
+     * @param size number of literals
+     */
+    public void addLemma(int[] clause, int size) {
+        if (concluded) {
+            return;
+        }
+        addClause(clause, size, step++);
+        concluded = size == 0;
+    }
+
+    /**
+     * Delete a clause in the proof. Deletions of unit clauses are ignored, since the solver keeps the assignments
+     * they imply.
+     * @param clause literals of the clause in DIMACS notation
+     * @param size number of literals
+     */
+    public void deleteClause(int[] clause, int size) {
+        if (concluded) {
+            return;
+        }
+        int[] sorted = toSortedLiterals(clause, size);
+        IntList candidates = clausesByHash.get(hash(sorted));
+        int match = NO_REASON;
+        for (int i = candidates == null ? -1 : candidates.size() - 1; i >= 0; --i) {
+            int c = candidates.get(i);
+            if (deletedSteps.get(c) == NOT_DELETED && hasLiterals(c, sorted)) {
+                match = c;
+                break;
+            }
+        }
+        if (match == NO_REASON || size == 1) {
+            ++ignoredDeletionCount;
+        } else {
+            deletedSteps.set(match, step);
+        }
+        ++step;
+    }
+
+    /**
+     * Check the proof. A proof without the empty clause is checked as if it ended with one.
+     * @return true if every lemma the empty clause depends on is valid, false otherwise
+     */
+    public boolean check() {
+        long start = System.nanoTime();
+        if (!concluded) {
+            addLemma(new int[0], 0);
+        }
+        int clauseCount = addedSteps.size();
+        occurrences = new IntList[2 * numberOfVariables];
+        for (int l = 0; l < occurrences.length; ++l) {
+            occurrences[l] = new IntList(2);
+        }
+        for (int c = 0; c < clauseCount; ++c) {
+            for (int i = starts.get(c); i < starts.get(c + 1); ++i) {
+                occurrences[literals.get(i)].add(c);
+            }
+        }
+        marked = new boolean[clauseCount];
+        failedLemma = new AtomicInteger(-1);
+        checkers = ThreadLocal.withInitial(LemmaChecker::new);
+
+        IntList pending = new IntList();
+        pending.add(clauseCount - 1);
+        marked[clauseCount - 1] = true;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            while (!pending.isEmpty() && failedLemma.get() == -1) {
+                ++roundCount;
+                IntList round = pending;
+                IntList dependencies = pool.invoke(new CheckTask(round, 0, round.size()));
+                checkedCount += round.size();
+                pending = new IntList();
+                for (int i = 0; i < dependencies.size(); ++i) {
+                    int c = dependencies.get(i);
+                    if (!marked[c]) {
+                        marked[c] = true;
+                        if (c >= originalCount) {
+                            pending.add(c);
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        checkTime = System.nanoTime() - start;
+        return failedLemma.get() == -1;
+    }
+
+    /**
+     * Get number of lemmas in the proof, including the empty clause added when the proof does not end with one.
+     * @return number of lemmas
+     */
+    public int getLemmaCount() {
+        return addedSteps.size() - originalCount;
+    }
+
+    public int getCheckedCount() {
+        return checkedCount;
+    }
+
+    /**
+     * Get number of original clauses in the unsatisfiable core found by the last check.
+     * @return number of clauses
+     */
+    public int getCoreSize() {
+        int size = 0;
+        for (int c = 0; c < originalCount; ++c) {
+            if (marked[c]) {
+                ++size;
+            }
+        }
+        return size;
+    }
+
+    public int getRoundCount() {
+        return roundCount;
+    }
+
+    /**
+     * Get number of deletions ignored because they delete a unit clause or a clause that is not present.
+     * @return number of deletions
+     */
+    public int getIgnoredDeletionCount() {
+        return ignoredDeletionCount;
+    }
+
+    /**
+     * Get the lemma that failed the last check.
+     * @return index of the lemma in the proof from 0, or -1 if no lemma failed
+     */
+    public int getFailedLemma() {
+        int lemma = failedLemma.get();
+        return lemma == -1 ? -1 : lemma - originalCount;
+    }
+
+    /**
+     * Get throughput of the last check.
+     * @return lemmas checked per second
+     */
+    public double getLemmasPerSecond() {
+        return checkTime == 0 ? 0 : checkedCount * 1e9 / checkTime;
+    }
+
+    public long getCheckTime() {
+        return checkTime;
+    }
+
+    private void addClause(int[] clause, int size, int added) {
+        int[] sorted = toSortedLiterals(clause, size);
+        int c = addedSteps.size();
+        // Literals keep their order, since the first literal of a lemma is its pivot
+        int start = literals.size();
+        for (int i = 0; i < size; ++i) {
+            int literal = LiteralUtil.fromDimacs(clause[i]);
+            boolean duplicate = false;
+            for (int k = start; k < literals.size() && !duplicate && sorted.length < size; ++k) {
+                duplicate = literals.get(k) == literal;
+            }
+            if (!duplicate) {
+                literals.add(literal);
+                numberOfVariables = Math.max(numberOfVariables, LiteralUtil.getVariable(literal) + 1);
+            }
+        }
+        starts.add(literals.size());
+        addedSteps.add(added);
+        deletedSteps.add(NOT_DELETED);
+        if (sorted.length == 1) {
+            units.add(c);
+        }
+        clausesByHash.computeIfAbsent(hash(sorted), key -> new IntList(1)).add(c);
+    }
+
+    /**
+     * Convert DIMACS literals to integer encoded literals, sorted and without duplicates.
+     * @param clause literals in DIMACS notation
+     * @param size number of literals
+     * @return integer encoded literals
+     */
+    private static int[] toSortedLiterals(int[] clause, int size) {
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; ++i) {
+            sorted[i] = LiteralUtil.fromDimacs(clause[i]);
+        }
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < size; ++i) {
+            if (unique == 0 || sorted[unique - 1] != sorted[i]) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        return unique == size ? sorted : Arrays.copyOf(sorted, unique);
+    }
+
+    private static long hash(int[] sorted) {
+        long hash = sorted.length;
+        for (int literal : sorted) {
+            hash = hash * 0x9E3779B97F4A7C15L + literal;
+        }
+        return hash;
+    }
+
+    private boolean hasLiterals(int c, int[] sorted) {
+        int start = starts.get(c);
+        if (starts.get(c + 1) - start != sorted.length) {
+            return false;
+        }
+        int[] clause = new int[sorted.length];
+        for (int i = 0; i < clause.length; ++i) {
+            clause[i] = literals.get(start + i);
+        }
+        Arrays.sort(clause);
+        return Arrays.equals(clause, sorted);
+    }
+
+    /**
+     * Checks a range of lemmas, splitting it in halves for other threads to steal.
+     */
+    private class CheckTask extends RecursiveTask<IntList> {
+        private static final long serialVersionUID = 1L;
+
+        private IntList lemmas;
+        private int from;
+        private int to;
+
+        CheckTask(IntList lemmas, int from, int to) {
+            this.lemmas = lemmas;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected IntList compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                CheckTask second = new CheckTask(lemmas, middle, to);
+                second.fork();
+                IntList dependencies = new CheckTask(lemmas, from, middle).compute();
+                IntList other = second.join();
+                for (int i = 0; i < other.size(); ++i) {
+                    dependencies.add(other.get(i));
+                }
+                return dependencies;
+            }
+            LemmaChecker checker = checkers.get();
+            IntList dependencies = new IntList();
+            for (int i = from; i < to && failedLemma.get() == -1; ++i) {
+                int lemma = lemmas.get(i);
+                if (!checker.check(lemma, dependencies)) {
+                    failedLemma.compareAndSet(-1, lemma);
+                }
+            }
+            return dependencies;
+        }
+    }
+
+    /**
+     * Propagation state of one thread. The literals of every clause are copied, since watching reorders them.
+     */
+    private class LemmaChecker {
+        private int[] clauseLiterals;
+        private IntList[] watches;
+        private byte[] values;
+        private int[] reasons;
+        private boolean[] seen;
+        private IntList trail;
+
+        /**
+         * Step of the proof at which the lemma being checked was added.
+         */
+        private int lemmaStep;
+
+        LemmaChecker() {
+            clauseLiterals = literals.toArray();
+            watches = new IntList[2 * numberOfVariables];
+            for (int l = 0; l < watches.length; ++l) {
+                watches[l] = new IntList(4);
+            }
+            for (int c = 0; c < addedSteps.size(); ++c) {
+                int start = starts.get(c);
+                if (starts.get(c + 1) - start >= 2) {
+                    watches[clauseLiterals[start]].add(c);
+                    watches[clauseLiterals[start + 1]].add(c);
+                }
+            }
+            values = new byte[numberOfVariables];
+            reasons = new int[numberOfVariables];
+            seen = new boolean[numberOfVariables];
+            trail = new IntList();
+        }
+
+        /**
+         * Check a lemma against the clauses present when it was added.
+         * @param lemma lemma to check
+         * @param dependencies clauses the lemma follows from, added to if the lemma is valid
+         * @return true if the lemma is valid, false otherwise
+         */
+        boolean check(int lemma, IntList dependencies) {
+            lemmaStep = addedSteps.get(lemma);
+            if (isUnitPropagationRedundant(lemma, NO_REASON, dependencies)) {
+                return true;
+            }
+            int size = starts.get(lemma + 1) - starts.get(lemma);
+            if (size == 0) {
+                return false;
+            }
+            // Every resolvent on the first literal of the lemma must follow by propagation
+            int pivot = literals.get(starts.get(lemma));
+            IntList candidates = occurrences[LiteralUtil.negate(pivot)];
+            for (int i = 0; i < candidates.size(); ++i) {
+                int c = candidates.get(i);
+                if (isActive(c) && !isUnitPropagationRedundant(lemma, c, dependencies)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Check if propagating the negation of a lemma, resolved with a clause on the first literal of the lemma if
+         * given, leads to a conflict.
+         * @param lemma lemma to check
+         * @param resolved clause containing the negated first literal, or {@code NO_REASON}
+         * @param dependencies clauses the conflict is derived from, added to if there is a conflict
+         * @return true if there is a conflict, false otherwise
+         */
+        private boolean isUnitPropagationRedundant(int lemma, int resolved, IntList dependencies) {
+            boolean tautology = !assignNegation(lemma, NO_REASON);
+            if (!tautology && resolved != NO_REASON) {
+                tautology = !assignNegation(resolved, LiteralUtil.negate(literals.get(starts.get(lemma))));
+            }
+            if (tautology) {
+                backtrack();
+                if (resolved != NO_REASON) {
+                    dependencies.add(resolved);
+                }
+                return true;
+            }
+
+            int conflict = NO_REASON;
+            for (int i = 0; i < units.size() && conflict == NO_REASON; ++i) {
+                int unit = units.get(i);
+                if (!isActive(unit)) {
+                    continue;
+                }
+                int literal = clauseLiterals[starts.get(unit)];
+                byte value = getValue(literal);
+                if (value == ImplicationGraph.FALSE) {
+                    conflict = unit;
+                } else if (value == ImplicationGraph.UNASSIGNED) {
+                    assign(literal, unit);
+                }
+            }
+            if (conflict == NO_REASON) {
+                conflict = propagate();
+            }
+            if (conflict != NO_REASON) {
+                analyze(conflict, dependencies);
+                if (resolved != NO_REASON) {
+                    dependencies.add(resolved);
+                }
+            }
+            backtrack();
+            return conflict != NO_REASON;
+        }
+
+        /**
+         * Assign the literals of a clause false.
+         * @param c clause
+         * @param skipped literal left unassigned, or {@code LiteralUtil.UNDEFINED}
+         * @return false if the clause has a literal already true, true otherwise
+         */
+        private boolean assignNegation(int c, int skipped) {
+            for (int i = starts.get(c); i < starts.get(c + 1); ++i) {
+                int literal = literals.get(i);
+                if (literal == skipped) {
+                    continue;
+                }
+                byte value = getValue(literal);
+                if (value == ImplicationGraph.TRUE) {
+                    return false;
+                }
+                if (value == ImplicationGraph.UNASSIGNED) {
+                    assign(LiteralUtil.negate(literal), NO_REASON);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Propagate the trail, marked clauses first: other clauses are only visited once the marked clauses imply
+         * nothing more.
+         * @return conflicting clause, or {@code NO_REASON} if there is no conflict
+         */
+        private int propagate() {
+            int markedHead = 0;
+            int otherHead = 0;
+            while (true) {
+                int conflict;
+                if (markedHead < trail.size()) {
+                    conflict = propagateLiteral(trail.get(markedHead++), true);
+                } else if (otherHead < trail.size()) {
+                    conflict = propagateLiteral(trail.get(otherHead++), false);
+                } else {
+                    return NO_REASON;
+                }
+                if (conflict != NO_REASON) {
+                    return conflict;
+                }
+            }
+        }
+
+        /**
+         * Visit the clauses watching the negation of a true literal, keeping the watched literals at the front of
+         * each clause.
+         * @param literal true literal
+         * @param inCore whether to visit the marked clauses or the others
+         * @return conflicting clause, or {@code NO_REASON} if there is no conflict
+         */
+        private int propagateLiteral(int literal, boolean inCore) {
+            int falseLiteral = LiteralUtil.negate(literal);
+            IntList watchers = watches[falseLiteral];
+            int j = 0;
+            for (int i = 0; i < watchers.size(); ++i) {
+                int c = watchers.get(i);
+                if (marked[c] != inCore || !isActive(c)) {
+                    watchers.set(j++, c);
+                    continue;
+                }
+                int start = starts.get(c);
+                if (clauseLiterals[start] == falseLiteral) {
+                    clauseLiterals[start] = clauseLiterals[start + 1];
+                    clauseLiterals[start + 1] = falseLiteral;
+                }
+                int first = clauseLiterals[start];
+                if (getValue(first) == ImplicationGraph.TRUE) {
+                    watchers.set(j++, c);
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = start + 2; k < starts.get(c + 1); ++k) {
+                    if (getValue(clauseLiterals[k]) != ImplicationGraph.FALSE) {
+                        clauseLiterals[start + 1] = clauseLiterals[k];
+                        clauseLiterals[k] = falseLiteral;
+                        watches[clauseLiterals[start + 1]].add(c);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+                watchers.set(j++, c);
+                if (getValue(first) == ImplicationGraph.FALSE) {
+                    for (++i; i < watchers.size(); ++i) {
+                        watchers.set(j++, watchers.get(i));
+                    }
+                    watchers.shrink(j);
+                    return c;
+                }
+                assign(first, c);
+            }
+            watchers.shrink(j);
+            return NO_REASON;
+        }
+
+        /**
+         * Collect the clauses a conflict is derived from, walking the trail back from the conflicting clause.
+         * @param conflict conflicting clause
+         * @param dependencies clauses the conflict is derived from
+         */
+        private void analyze(int conflict, IntList dependencies) {
+            dependencies.add(conflict);
+            for (int i = starts.get(conflict); i < starts.get(conflict + 1); ++i) {
+                seen[LiteralUtil.getVariable(literals.get(i))] = true;
+            }
+            for (int t = trail.size() - 1; t >= 0; --t) {
+                int variable = LiteralUtil.getVariable(trail.get(t));
+                if (!seen[variable]) {
+                    continue;
+                }
+                seen[variable] = false;
+                int reason = reasons[variable];
+                if (reason == NO_REASON) {
+                    continue;
+                }
+                dependencies.add(reason);
+                for (int k = starts.get(reason); k < starts.get(reason + 1); ++k) {
+                    seen[LiteralUtil.getVariable(literals.get(k))] = true;
+                }
+                seen[variable] = false;
+            }
+        }
+
+        private boolean isActive(int c) {
+            return addedSteps.get(c) < lemmaStep && deletedSteps.get(c) > lemmaStep;
+        }
+
+        private byte getValue(int literal) {
+            byte value = values[LiteralUtil.getVariable(literal)];
+            return LiteralUtil.isPositive(literal) ? value : (byte) -value;
+        }
+
+        private void assign(int literal, int reason) {
+            int variable = LiteralUtil.getVariable(literal);
+            values[variable] = LiteralUtil.isPositive(literal) ? ImplicationGraph.TRUE : ImplicationGraph.FALSE;
+            reasons[variable] = reason;
+            trail.add(literal);
+        }
+
+        private void backtrack() {
+            for (int i = 0; i < trail.size(); ++i) {
+                values[LiteralUtil.getVariable(trail.get(i))] = ImplicationGraph.UNASSIGNED;
+            }
+            trail.clear();
+        }
+    }
+}
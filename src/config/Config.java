@@ -7,6 +7,8 @@ public class Config {
         CDCL_NClause,
         CDCL_Random,
         CDCL_VSDIS,
+        PORTFOLIO,
+        CUBE_AND_CONQUER,
     }
 
     public enum Logging {
@@ -15,6 +17,126 @@ public class Config {
         DEBUG,
     }
 
+    /**
+     * Minimization of learnt clauses by self-subsuming resolution with the reasons of their literals.
+     */
+    public enum Minimization {
+        NONE,
+        LOCAL,
+        RECURSIVE,
+    }
+
+    /**
+     * Polarity of decisions. {@code SAVING} reuses the last value of a variable before it was unassigned, and
+     * {@code REPHASING} additionally resets the saved values periodically to the original, inverted, best trail or
+     * random phases.
+     */
+    public enum Phase {
+        POSITIVE,
+        SAVING,
+        REPHASING,
+    }
+
+    /**
+     * Restart policy of CDCL solvers. {@code LUBY} restarts after conflict counts following the Luby sequence, and
+     * {@code GLUCOSE} restarts when recent learnt clauses have a high literal block distance compared to the average.
+     */
+    public enum Restart {
+        NONE,
+        LUBY,
+        GLUCOSE,
+    }
+
+    /**
+     * Memory of the clause arena. {@code DIRECT} stores clauses in a direct buffer outside the Java heap.
+     */
+    public enum ClauseStore {
+        HEAP,
+        DIRECT,
+    }
+
+    /**
+     * Extraction of an unsatisfiable core after a CNF is found unsatisfiable. {@code MINIMIZE} removes clauses from
+     * the core until each remaining one is necessary.
+     */
+    public enum Core {
+        NONE,
+        EXTRACT,
+        MINIMIZE,
+    }
+
+    /**
+     * Encoding of the DRAT proof written with {@code Config.proofOutput}.
+     */
+    public enum ProofFormat {
+        TEXT,
+        BINARY,
+    }
+
     public static Solver solver = Solver.CDCL_Chaff;
     public static Logging logging = Logging.VERBOSE;
+    public static Minimization minimization = Minimization.RECURSIVE;
+    public static Phase phase = Phase.SAVING;
+    public static Restart restart = Restart.GLUCOSE;
+    public static ClauseStore clauseStore = ClauseStore.HEAP;
+    public static Core unsatCore = Core.NONE;
+    public static ProofFormat proofFormat = ProofFormat.TEXT;
+
+    /**
+     * Whether to run bounded variable elimination between parsing and solving.
+     */
+    public static boolean variableElimination = true;
+
+    /**
+     * Whether to remove subsumed clauses and strengthen clauses by self-subsuming resolution, before search on the
+     * clauses of the CNF and periodically during search on the learnt clauses.
+     */
+    public static boolean subsumption = true;
+
+    /**
+     * Whether to substitute equivalent literals found in the binary clauses before search.
+     */
+    public static boolean equivalences = true;
+
+    /**
+     * Whether to remove blocked clauses before search.
+     */
+    public static boolean blockedClauseElimination = true;
+
+    /**
+     * Whether to re-encode groups of clauses that share literals, such as pairwise at-most-one constraints, with
+     * fewer clauses over new variables before search.
+     */
+    public static boolean variableAddition = true;
+
+    /**
+     * Whether to probe literals at decision level 0 before search, learning the units found.
+     */
+    public static boolean probing = true;
+
+    /**
+     * Whether the solvers of a portfolio share short learnt clauses with low literal block distance.
+     */
+    public static boolean clauseSharing = true;
+
+    /**
+     * Most literals in a cube of cube-and-conquer, or 0 to choose from the number of processors.
+     */
+    public static int cubeDepth = 0;
+
+    /**
+     * Number of threads parsing the CNF file, or 0 to choose from the number of processors. Small files are parsed on
+     * one thread.
+     */
+    public static int parseThreads = 0;
+
+    /**
+     * Path of the DRAT proof of unsatisfiability, or null to write no proof. Only the sequential solvers write proofs.
+     */
+    public static String proofOutput = null;
+
+    /**
+     * Whether to check the proof written with {@code Config.proofOutput} once the CNF is found unsatisfiable.
+     */
+    public static boolean checkProof = false;
 }
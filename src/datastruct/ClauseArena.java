@@ -0,0 +1,284 @@
+package datastruct;
+
+/**
+ * Flat storage of clauses in one contiguous block of ints. A clause is addressed by the offset of its header, called
+ * the clause reference, and its integer encoded literals follow the header directly. The header holds the size, flags,
+ * literal block distance and activity of the clause. Subclasses provide the memory the ints are stored in.
+ */
+public abstract class ClauseArena {
+    /**
+     * Marker for the absence of a clause reference.
+     */
+    public static final int NO_CLAUSE = -1;
+
+    private static final int SIZE_OFFSET = 0;
+    private static final int FLAGS_OFFSET = 1;
+    private static final int LBD_OFFSET = 2;
+    private static final int ACTIVITY_OFFSET = 3;
+    private static final int HEADER_SIZE = 4;
+
+    private static final int LEARNT_FLAG = 1;
+    private static final int DELETED_FLAG = 1 << 1;
+    private static final int USED_FLAG = 1 << 2;
+    private static final int IMPORTED_FLAG = 1 << 3;
+
+    private int top;
+
+    /**
+     * Clause references before and after the last compaction, sorted by the old reference.
+     */
+    private IntList relocatedFrom;
+    private IntList relocatedTo;
+
+    protected ClauseArena() {
+        top = 0;
+        relocatedFrom = new IntList();
+        relocatedTo = new IntList();
+    }
+
+    protected abstract int get(int index);
+
+    protected abstract void set(int index, int value);
+
+    /**
+     * Make room for at least the number of ints, keeping the ints stored so far.
+     * @param required number of ints
+     */
+    protected abstract void ensureCapacity(int required);
+
+    /**
+     * Get number of ints the memory can hold without growing.
+     * @return capacity in ints
+     */
+    public abstract int getCapacity();
+
+    /**
+     * Copy ints towards the front of the memory.
+     * @param from index of the first int to copy
+     * @param to index to copy the first int to, not larger than {@code from}
+     * @param length number of ints to copy
+     */
+    protected abstract void moveDown(int from, int to, int length);
+
+    /**
+     * Store a clause in the arena.
+     * @param literals array containing the literals
+     * @param size number of literals to take from the array
+     * @param learnt whether the clause is learnt
+     * @return reference of the stored clause
+     */
+    public int allocate(int[] literals, int size, boolean learnt) {
+        int cref = allocateHeader(size, learnt);
+        for (int i = 0; i < size; ++i) {
+            set(cref + HEADER_SIZE + i, literals[i]);
+        }
+        return cref;
+    }
+
+    /**
+     * Store a clause in the arena.
+     * @param literals literals of the clause
+     * @param learnt whether the clause is learnt
+     * @return reference of the stored clause
+     */
+    public int allocate(IntList literals, boolean learnt) {
+        int size = literals.size();
+        int cref = allocateHeader(size, learnt);
+        for (int i = 0; i < size; ++i) {
+            set(cref + HEADER_SIZE + i, literals.get(i));
+        }
+        return cref;
+    }
+
+    /**
+     * Reserve memory for a clause and write its header.
+     * @param size number of literals of the clause
+     * @param learnt whether the clause is learnt
+     * @return reference of the clause
+     */
+    private int allocateHeader(int size, boolean learnt) {
+        int required = top + HEADER_SIZE + size;
+        if (required > getCapacity()) {
+            ensureCapacity(Math.max(required, getCapacity() * 2));
+        }
+        int cref = top;
+        set(cref + SIZE_OFFSET, size);
+        set(cref + FLAGS_OFFSET, learnt ? LEARNT_FLAG : 0);
+        set(cref + LBD_OFFSET, size);
+        set(cref + ACTIVITY_OFFSET, Float.floatToRawIntBits(0f));
+        top = required;
+        return cref;
+    }
+
+    public int size(int cref) {
+        return get(cref + SIZE_OFFSET);
+    }
+
+    public int literal(int cref, int index) {
+        return get(cref + HEADER_SIZE + index);
+    }
+
+    public void setLiteral(int cref, int index, int literal) {
+        set(cref + HEADER_SIZE + index, literal);
+    }
+
+    public void swapLiterals(int cref, int first, int second) {
+        int offset = cref + HEADER_SIZE;
+        int tmp = get(offset + first);
+        set(offset + first, get(offset + second));
+        set(offset + second, tmp);
+    }
+
+    /**
+     * Copy the literals of a clause into a new array.
+     * @param cref clause reference
+     * @return literals of the clause
+     */
+    public int[] getLiterals(int cref) {
+        int[] literals = new int[size(cref)];
+        for (int i = 0; i < literals.length; ++i) {
+            literals[i] = literal(cref, i);
+        }
+        return literals;
+    }
+
+    public boolean isLearnt(int cref) {
+        return (get(cref + FLAGS_OFFSET) & LEARNT_FLAG) != 0;
+    }
+
+    public boolean isDeleted(int cref) {
+        return (get(cref + FLAGS_OFFSET) & DELETED_FLAG) != 0;
+    }
+
+    /**
+     * Check if a learnt clause took part in conflict analysis since its used flag was last cleared.
+     * @param cref clause reference
+     * @return true if the clause was used, false otherwise
+     */
+    public boolean isUsed(int cref) {
+        return (get(cref + FLAGS_OFFSET) & USED_FLAG) != 0;
+    }
+
+    public void setUsed(int cref, boolean used) {
+        if (used) {
+            set(cref + FLAGS_OFFSET, get(cref + FLAGS_OFFSET) | USED_FLAG);
+        } else {
+            set(cref + FLAGS_OFFSET, get(cref + FLAGS_OFFSET) & ~USED_FLAG);
+        }
+    }
+
+    /**
+     * Check if a learnt clause was imported from another solver and has not taken part in conflict analysis yet.
+     * @param cref clause reference
+     * @return true if the clause is an unused imported clause, false otherwise
+     */
+    public boolean isImported(int cref) {
+        return (get(cref + FLAGS_OFFSET) & IMPORTED_FLAG) != 0;
+    }
+
+    public void setImported(int cref, boolean imported) {
+        if (imported) {
+            set(cref + FLAGS_OFFSET, get(cref + FLAGS_OFFSET) | IMPORTED_FLAG);
+        } else {
+            set(cref + FLAGS_OFFSET, get(cref + FLAGS_OFFSET) & ~IMPORTED_FLAG);
+        }
+    }
+
+    /**
+     * Get literal block distance of a clause, which is the size of the clause until it is set.
+     * @param cref clause reference
+     * @return literal block distance
+     */
+    public int getLbd(int cref) {
+        return get(cref + LBD_OFFSET);
+    }
+
+    public void setLbd(int cref, int lbd) {
+        set(cref + LBD_OFFSET, lbd);
+    }
+
+    public float getActivity(int cref) {
+        return Float.intBitsToFloat(get(cref + ACTIVITY_OFFSET));
+    }
+
+    public void setActivity(int cref, float activity) {
+        set(cref + ACTIVITY_OFFSET, Float.floatToRawIntBits(activity));
+    }
+
+    /**
+     * Mark a clause as deleted. Its memory is reclaimed by the next {@code compact}.
+     * @param cref clause reference
+     */
+    public void delete(int cref) {
+        set(cref + FLAGS_OFFSET, get(cref + FLAGS_OFFSET) | DELETED_FLAG);
+    }
+
+    /**
+     * Remove deleted clauses and move the remaining clauses to the front of the arena, keeping their order. References
+     * held outside the arena must be updated with {@code relocate}.
+     */
+    public void compact() {
+        relocatedFrom.clear();
+        relocatedTo.clear();
+
+        int read = 0;
+        int write = 0;
+        while (read < top) {
+            int length = HEADER_SIZE + get(read + SIZE_OFFSET);
+            if (!isDeleted(read)) {
+                if (read != write) {
+                    moveDown(read, write, length);
+                }
+                relocatedFrom.add(read);
+                relocatedTo.add(write);
+                write += length;
+            }
+            read += length;
+        }
+        top = write;
+    }
+
+    /**
+     * Get the new reference of a clause moved by the last {@code compact}.
+     * @param cref clause reference before compaction
+     * @return clause reference after compaction, or {@code NO_CLAUSE} if the clause was deleted
+     */
+    public int relocate(int cref) {
+        int low = 0;
+        int high = relocatedFrom.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int from = relocatedFrom.get(mid);
+            if (from < cref) {
+                low = mid + 1;
+            } else if (from > cref) {
+                high = mid - 1;
+            } else {
+                return relocatedTo.get(mid);
+            }
+        }
+        return NO_CLAUSE;
+    }
+
+    /**
+     * Get number of ints used by stored clauses, including deleted clauses that are not compacted yet.
+     * @return number of ints used
+     */
+    public int getUsedSize() {
+        return top;
+    }
+
+    /**
+     * Get number of bytes used by stored clauses, including deleted clauses that are not compacted yet.
+     * @return number of bytes used
+     */
+    public long getUsedBytes() {
+        return (long) top * Integer.BYTES;
+    }
+
+    public void clear() {
+        top = 0;
+        relocatedFrom.clear();
+        relocatedTo.clear();
+    }
+}
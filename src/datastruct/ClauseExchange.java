@@ -0,0 +1,142 @@
+package datastruct;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Exchange of learnt clauses between solvers running in parallel on copies of the same CNF, whose integer encoded
+ * literals therefore agree. Every worker publishes into its own ring buffer, which it is the only writer of, and
+ * reads the buffers of the other workers from its own cursors, so no locks are needed. A ring keeps the most recent
+ * clauses only: a reader that falls behind by more than the capacity skips the clauses that were overwritten.
+ * <p>
+ * Entries are immutable and carry their sequence number, so a reader can tell an entry it expects from one that was
+ * overwritten while it was reading.
+ */
+public class ClauseExchange {
+
+    /**
+     * Default limits on the clauses published, which keep the exchange to short clauses of high quality.
+     */
+    public static final int DEFAULT_SIZE_LIMIT = 8;
+    public static final int DEFAULT_LBD_LIMIT = 4;
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private Ring[] rings;
+    private int mask;
+    private int sizeLimit;
+    private int lbdLimit;
+
+    /**
+     * Position of each reader in the ring of each writer, indexed by reader then writer. Only accessed by the thread
+     * of the reader.
+     */
+    private long[][] cursors;
+
+    public ClauseExchange(int workers) {
+        this(workers, DEFAULT_CAPACITY, DEFAULT_SIZE_LIMIT, DEFAULT_LBD_LIMIT);
+    }
+
+    /**
+     * Create an exchange.
+     * @param workers number of workers
+     * @param capacity clauses kept per worker, rounded up to a power of two
+     * @param sizeLimit longest clause published
+     * @param lbdLimit highest literal block distance of a clause published
+     */
+    public ClauseExchange(int workers, int capacity, int sizeLimit, int lbdLimit) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        mask = size - 1;
+        this.sizeLimit = sizeLimit;
+        this.lbdLimit = lbdLimit;
+        rings = new Ring[workers];
+        for (int i = 0; i < workers; ++i) {
+            rings[i] = new Ring(size);
+        }
+        cursors = new long[workers][workers];
+    }
+
+    /**
+     * Publish a learnt clause of a worker if it passes the size and LBD limits.
+     * @param worker index of the publishing worker
+     * @param literals literals of the clause
+     * @param lbd literal block distance of the clause
+     * @return true if the clause was published, false if it was filtered out
+     */
+    public boolean export(int worker, IntList literals, int lbd) {
+        if (literals.size() > sizeLimit || lbd > lbdLimit) {
+            return false;
+        }
+        Ring ring = rings[worker];
+        long sequence = ring.written.get();
+        ring.slots.set((int) (sequence & mask), new SharedClause(sequence, literals.toArray(), lbd));
+        ring.written.set(sequence + 1);
+        return true;
+    }
+
+    /**
+     * Pass the clauses published by the other workers since the last call to a consumer.
+     * @param worker index of the reading worker
+     * @param consumer consumer of the literals and literal block distance of each clause, which must not modify the
+     *                 literals
+     * @return number of clauses passed
+     */
+    public int importClauses(int worker, ObjIntConsumer<int[]> consumer) {
+        int count = 0;
+        for (int other = 0; other < rings.length; ++other) {
+            if (other == worker) {
+                continue;
+            }
+            Ring ring = rings[other];
+            long end = ring.written.get();
+            long start = Math.max(cursors[worker][other], end - mask - 1);
+            for (long sequence = start; sequence < end; ++sequence) {
+                SharedClause clause = ring.slots.get((int) (sequence & mask));
+                if (clause != null && clause.sequence == sequence) {
+                    consumer.accept(clause.literals, clause.lbd);
+                    ++count;
+                }
+            }
+            cursors[worker][other] = end;
+        }
+        return count;
+    }
+
+    /**
+     * Drop all published clauses. Must not be called while workers are running.
+     */
+    public void clear() {
+        for (int i = 0; i < rings.length; ++i) {
+            rings[i] = new Ring(mask + 1);
+            for (int j = 0; j < rings.length; ++j) {
+                cursors[i][j] = 0;
+            }
+        }
+    }
+
+    private static class Ring {
+        private AtomicReferenceArray<SharedClause> slots;
+
+        /**
+         * Number of clauses published so far.
+         */
+        private AtomicLong written;
+
+        Ring(int size) {
+            slots = new AtomicReferenceArray<>(size);
+            written = new AtomicLong();
+        }
+    }
+
+    private static class SharedClause {
+        private final long sequence;
+        private final int[] literals;
+        private final int lbd;
+
+        SharedClause(long sequence, int[] literals, int lbd) {
+            this.sequence = sequence;
+            this.literals = literals;
+            this.lbd = lbd;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package datastruct;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Clause arena stored in a direct buffer outside the Java heap, so large formulas neither grow the heap nor add work
+ * for the garbage collector. The memory is released when the arena is garbage collected.
+ */
+public class DirectClauseArena extends ClauseArena {
+    private IntBuffer memory;
+
+    public DirectClauseArena() {
+        this(1 << 16);
+    }
+
+    public DirectClauseArena(int capacity) {
+        memory = allocate(Math.max(capacity, 1));
+    }
+
+    private static IntBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    @Override
+    protected int get(int index) {
+        return memory.get(index);
+    }
+
+    @Override
+    protected void set(int index, int value) {
+        memory.put(index, value);
+    }
+
+    @Override
+    protected void ensureCapacity(int required) {
+        if (required <= memory.capacity()) {
+            return;
+        }
+        IntBuffer grown = allocate(required);
+        IntBuffer used = memory.duplicate();
+        used.position(0).limit(getUsedSize());
+        grown.put(used);
+        memory = grown;
+    }
+
+    @Override
+    public int getCapacity() {
+        return memory.capacity();
+    }
+
+    @Override
+    protected void moveDown(int from, int to, int length) {
+        for (int i = 0; i < length; ++i) {
+            memory.put(to + i, memory.get(from + i));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package datastruct;
+
+import java.util.Arrays;
+
+/**
+ * Clause arena stored in an int array on the Java heap.
+ */
+public class HeapClauseArena extends ClauseArena {
+    private int[] memory;
+
+    public HeapClauseArena() {
+        this(1024);
+    }
+
+    public HeapClauseArena(int capacity) {
+        memory = new int[Math.max(capacity, 1)];
+    }
+
+    @Override
+    protected int get(int index) {
+        return memory[index];
+    }
+
+    @Override
+    protected void set(int index, int value) {
+        memory[index] = value;
+    }
+
+    @Override
+    protected void ensureCapacity(int required) {
+        if (required > memory.length) {
+            memory = Arrays.copyOf(memory, required);
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        return memory.length;
+    }
+
+    @Override
+    protected void moveDown(int from, int to, int length) {
+        System.arraycopy(memory, from, memory, to, length);
+    }
+}
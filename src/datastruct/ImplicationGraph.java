@@ -1,140 +1,308 @@
 package datastruct;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
-import java.util.Set;
 
 import config.Config;
-import util.SolverUtil;
+import util.LiteralUtil;
 
 /**
- * A graph where the nodes are assigned variables, with edges to show implications.
+ * A graph where the nodes are assigned variables, with edges to show implications. The graph is stored as an
+ * assignment trail: every assignment is pushed in order, the start of every decision level is marked, and each
+ * variable records its decision level and the reason clause that implied it. The edges of an implied variable go
+ * from the other literals of its reason clause.
  */
 public class ImplicationGraph {
     /**
-     * Map of edges that shows implication. The key is a pair of nodes, which the first node implies the second
-     * node, together with the clause which caused the implication.
+     * Values of the tri-state assignment of a variable or literal.
      */
-    private Map<Pair<Node, Node>, Clause> edgeMap;
+    public static final byte TRUE = 1;
+    public static final byte FALSE = -1;
+    public static final byte UNASSIGNED = 0;
 
-    // TODO: consider moving these to ClauseDB instead
-    private Set<String> unassignedVariables;
-    private Map<String, Boolean> assignedVariables;
-    private Map<String, Node> assignedNodes;
+    /**
+     * Kinds of rephasing, which overwrite the saved phases with the original (positive) phases, their inverse, the
+     * values of the longest trail seen since the last best rephase, or random values.
+     */
+    public enum Rephase {
+        ORIGINAL,
+        INVERTED,
+        BEST,
+        RANDOM,
+    }
+
+    /**
+     * Assignment of each variable, indexed by variable.
+     */
+    private byte[] assignments;
+
+    /**
+     * Reference of the clause that implied each variable, or {@code ClauseArena.NO_CLAUSE} for decisions and
+     * unit clauses. Indexed by variable.
+     */
+    private int[] reasons;
+
+    /**
+     * Decision level at which each variable was assigned, indexed by variable.
+     */
+    private int[] levels;
+
+    /**
+     * Literals made true, in order of assignment.
+     */
+    private int[] trail;
+    private int trailSize;
+
+    /**
+     * Trail size at the start of each decision level, indexed by decision level - 1.
+     */
+    private IntList trailLimits;
+
+    /**
+     * Value of each variable before it was last unassigned, used as the polarity of decisions.
+     */
+    private byte[] savedPhases;
+
+    /**
+     * Values of the longest trail seen since the last rephase, and its size.
+     */
+    private byte[] bestPhases;
+    private int bestTrailSize;
+
+    private ClauseArena arena;
+    private List<String> variableNames;
 
     private int backtrackLevel;
 
+    /**
+     * Buffers reused by conflict analysis: variables marked during the analysis, and the learnt clause.
+     */
+    private boolean[] seen;
+    private IntList learntClause;
+    private IntList analyzeStack;
+    private IntList analyzeToClear;
+
+    /**
+     * Learnt clauses resolved by the last conflict analysis.
+     */
+    private IntList analyzedLearntClauses;
+
+    private int learntLiteralCount;
+    private int minimizedLiteralCount;
+
+    /**
+     * Literal block distance of the last learnt clause, which is the number of distinct decision levels in it.
+     * Levels are counted by stamping {@code levelStamps} with a value that changes every analysis.
+     */
+    private int lbd;
+    private int[] levelStamps;
+    private int stamp;
+
+    private Random random;
+
     public ImplicationGraph() {
-        edgeMap = new HashMap<>();
-        unassignedVariables = new HashSet<>();
-        assignedVariables = new HashMap<>();
-        assignedNodes = new HashMap<>();
+        assignments = new byte[0];
+        reasons = new int[0];
+        levels = new int[0];
+        trail = new int[0];
+        trailLimits = new IntList();
+        savedPhases = new byte[0];
+        bestPhases = new byte[0];
+        variableNames = new ArrayList<>();
         backtrackLevel = -1;
+        seen = new boolean[0];
+        levelStamps = new int[0];
+        learntClause = new IntList();
+        analyzeStack = new IntList();
+        analyzeToClear = new IntList();
+        analyzedLearntClauses = new IntList();
+        random = new Random(System.currentTimeMillis());
     }
 
     /**
      * Initialize the graph.
-     * @param clauses clauses in the CNF
+     * @param arena arena that stores the clauses
+     * @param variableNames name of each variable, indexed by variable
      */
-    public void initialize(Set<Clause> clauses) {
-        clauses.forEach(c -> c.getLiterals().forEach(l -> unassignedVariables.add(l.getName())));
+    public void initialize(ClauseArena arena, List<String> variableNames) {
+        this.arena = arena;
+        this.variableNames = variableNames;
+        int numberOfVariables = variableNames.size();
+        assignments = new byte[numberOfVariables];
+        reasons = new int[numberOfVariables];
+        levels = new int[numberOfVariables];
+        trail = new int[numberOfVariables];
+        trailSize = 0;
+        trailLimits.clear();
+        savedPhases = new byte[numberOfVariables];
+        Arrays.fill(savedPhases, TRUE);
+        bestPhases = new byte[numberOfVariables];
+        bestTrailSize = 0;
+        seen = new boolean[numberOfVariables];
+        levelStamps = new int[numberOfVariables + 1];
+        stamp = 0;
     }
 
     /**
-     * Get unassigned variables.
-     * @return set of unassigned variables
+     * Make room for variables added after initialization. New variables are unassigned.
+     * @param numberOfVariables number of variables
      */
-    public Set<String> getUnassignedVariables() {
-        return unassignedVariables;
+    public void grow(int numberOfVariables) {
+        int size = assignments.length;
+        if (numberOfVariables <= size) {
+            return;
+        }
+        assignments = Arrays.copyOf(assignments, numberOfVariables);
+        reasons = Arrays.copyOf(reasons, numberOfVariables);
+        levels = Arrays.copyOf(levels, numberOfVariables);
+        trail = Arrays.copyOf(trail, numberOfVariables);
+        savedPhases = Arrays.copyOf(savedPhases, numberOfVariables);
+        Arrays.fill(savedPhases, size, numberOfVariables, TRUE);
+        bestPhases = Arrays.copyOf(bestPhases, numberOfVariables);
+        seen = Arrays.copyOf(seen, numberOfVariables);
+        levelStamps = Arrays.copyOf(levelStamps, numberOfVariables + 1);
     }
 
     /**
-     * Adds a decision node.
-     * @param v assigned variable
-     * @param decisionLevel decision level during the assignment
+     * Encode the reason of a literal implied by a binary clause without referring to the clause, as the other literal
+     * of the clause. Binary reasons are negative, below {@code ClauseArena.NO_CLAUSE}.
+     * @param otherLiteral other literal of the binary clause, which is false
+     * @return binary reason
      */
-    public void addDecisionNode(Variable v, int decisionLevel) {
-        Node node = new Node(v, decisionLevel);
-        addNode(node);
+    public static int binaryReason(int otherLiteral) {
+        return -2 - otherLiteral;
+    }
+
+    private static boolean isBinaryReason(int reason) {
+        return reason < ClauseArena.NO_CLAUSE;
     }
 
     /**
-     * Adds an implied variable node.
-     * @param impliedVariable implied variable
-     * @param decisionLevel decision level during the implication
-     * @param antecedent the clause that caused the implication
-     */
-    public void addImplicationNode(Variable impliedVariable, int decisionLevel, Clause antecedent) {
-        Node impliedNode = new Node(impliedVariable, decisionLevel);
-        unassignedVariables.remove(impliedVariable.getName());
-        assignedVariables.put(impliedVariable.getName(), impliedVariable.getAssignment());
-        assignedNodes.put(impliedVariable.getName(), impliedNode);
-
-        Set<Literal> literals = antecedent.getLiterals();
-        // Link all assignments of literals in the clause to the implied node
-        literals.stream().filter(l -> !l.getName().equals(impliedVariable.getName())).forEach(l -> {
-            Node antecedentNode = assignedNodes.get(l.getName());
-            if (antecedentNode != null) {
-                addEdge(antecedentNode, impliedNode, antecedent);
-            }
-        });
+     * Get number of literals of a reason. A binary reason only holds the literal other than the implied literal.
+     * @param reason clause reference or binary reason
+     * @return number of literals
+     */
+    private int reasonSize(int reason) {
+        return isBinaryReason(reason) ? 1 : arena.size(reason);
+    }
+
+    private int reasonLiteral(int reason, int index) {
+        return isBinaryReason(reason) ? -2 - reason : arena.literal(reason, index);
     }
 
     /**
-     * Adds a node to the graph.
-     * @param node node to add to graph.
+     * Adds a decision node. A decision level above the current one starts a new level on the trail.
+     * @param literal literal made true by the decision
+     * @param decisionLevel decision level during the assignment
      */
-    private void addNode(Node node) {
-        if (assignedNodes.containsKey(node.getVariable().getName())) {
+    public void addDecisionNode(int literal, int decisionLevel) {
+        if (assignments[LiteralUtil.getVariable(literal)] != UNASSIGNED) {
             return;
         }
+        while (trailLimits.size() < decisionLevel) {
+            trailLimits.add(trailSize);
+        }
+        addNode(literal, decisionLevel, ClauseArena.NO_CLAUSE);
+    }
 
-        Variable v = node.getVariable();
-        unassignedVariables.remove(v.getName());
-        assignedVariables.put(v.getName(), v.getAssignment());
-        assignedNodes.put(v.getName(), node);
+    /**
+     * Adds an implied variable node.
+     * @param literal literal made true by the implication
+     * @param decisionLevel decision level during the implication
+     * @param antecedent reference of the clause that caused the implication, or a {@code binaryReason}
+     */
+    public void addImplicationNode(int literal, int decisionLevel, int antecedent) {
+        addNode(literal, decisionLevel, antecedent);
     }
 
     /**
-     * Backtracks to the decision level. Removes the edges (implications) that was made at the decision
-     * level.
+     * Adds a node to the graph by pushing the assignment on the trail.
+     * @param literal literal made true
+     * @param decisionLevel decision level of the assignment
+     * @param reason reference of the reason clause
+     */
+    private void addNode(int literal, int decisionLevel, int reason) {
+        int variable = LiteralUtil.getVariable(literal);
+        assignments[variable] = LiteralUtil.isPositive(literal) ? TRUE : FALSE;
+        reasons[variable] = reason;
+        levels[variable] = decisionLevel;
+        trail[trailSize++] = literal;
+    }
+
+    /**
+     * Backtracks to the decision level. Unassigns the variables on the trail above the decision level, which
+     * removes their edges (implications) as well.
      * @param decisionLevel decision level to backtrack to
      */
     public void revertToDecisionLevel(int decisionLevel) {
-        List<Node> nodesToRemove = new ArrayList<>();
-        for (String k : assignedNodes.keySet()) {
-            Node n = assignedNodes.get(k);
-            if (n.getDecisionLevel() > decisionLevel) {
-                nodesToRemove.add(n);
-            }
+        if (trailLimits.size() <= decisionLevel) {
+            return;
         }
-
-        for (Node remove : nodesToRemove) {
-            removeEdges(remove);
-            assignedNodes.remove(remove.getVariable().getName());
-            assignedVariables.remove(remove.getVariable().getName());
-            unassignedVariables.add(remove.getVariable().getName());
+        if (Config.phase == Config.Phase.REPHASING && trailSize > bestTrailSize) {
+            bestTrailSize = trailSize;
+            System.arraycopy(assignments, 0, bestPhases, 0, assignments.length);
         }
+        int limit = trailLimits.get(decisionLevel);
+        for (int i = trailSize - 1; i >= limit; --i) {
+            int variable = LiteralUtil.getVariable(trail[i]);
+            savedPhases[variable] = assignments[variable];
+            assignments[variable] = UNASSIGNED;
+        }
+        trailSize = limit;
+        trailLimits.shrink(decisionLevel);
     }
 
     /**
-     * Remove edges (implications) that contains node.
-     * @param n node that specifies edges to remove
+     * Find the decisions that a false literal follows from. When the literal is an assumption found false, these are
+     * the assumptions that together cannot hold.
+     * @param literal false literal
+     * @return decision literals, empty if the literal is false at level 0
      */
-    private void removeEdges(Node n) {
-        List<Pair<Node, Node>> edgesToRemove = new ArrayList<>();
-        for (Pair<Node, Node> edge : edgeMap.keySet()) {
-            if (edge.getFirst().equals(n) || edge.getSecond().equals(n)) {
-                edgesToRemove.add(edge);
-            }
+    public IntList analyzeFinal(int literal) {
+        IntList decisions = new IntList();
+        int variable = LiteralUtil.getVariable(literal);
+        if (levels[variable] == 0) {
+            return decisions;
         }
-        for (Pair<Node, Node> remove : edgesToRemove) {
-            edgeMap.remove(remove);
+        seen[variable] = true;
+        for (int i = trailSize - 1; i >= trailLimits.get(0); --i) {
+            int v = LiteralUtil.getVariable(trail[i]);
+            if (!seen[v]) {
+                continue;
+            }
+            seen[v] = false;
+            int reason = reasons[v];
+            if (reason == ClauseArena.NO_CLAUSE) {
+                decisions.add(trail[i]);
+                continue;
+            }
+            for (int k = 0; k < reasonSize(reason); ++k) {
+                int u = LiteralUtil.getVariable(reasonLiteral(reason, k));
+                if (u != v && levels[u] > 0) {
+                    seen[u] = true;
+                }
+            }
         }
+        return decisions;
+    }
+
+    public int getNumberOfVariables() {
+        return assignments.length;
+    }
+
+    public int getTrailSize() {
+        return trailSize;
+    }
+
+    /**
+     * Get literal on the trail.
+     * @param index position on the trail, in order of assignment
+     * @return literal made true
+     */
+    public int getTrailLiteral(int index) {
+        return trail[index];
     }
 
     /**
@@ -146,219 +314,414 @@ public class ImplicationGraph {
     }
 
     /**
-     * Adds an edge (implication) from one node to another node, which means that the assignment of from node
-     * implies that to node must be of certain assignment.
-     * @param from from node
-     * @param to to node
-     * @param clause the antecedent clause that caused the implication
+     * Perform first unique implication point conflict analysis. The trail is walked backwards from the conflict,
+     * marking variables in {@code seen} and resolving with the reason of every marked variable of the conflict
+     * decision level, until only one such variable is left. The learnt clause is built in a reused buffer with the
+     * asserting literal at index 0 and a literal of the backtrack level at index 1. Variables assigned at level 0
+     * are false in every model and are left out.
+     * @param conflictedClause reference of the clause that is conflicted
+     * @param decisionLevel decision level during the conflict
+     * @return literals of the learnt clause, valid until the next analysis
      */
-    private void addEdge(Node from, Node to, Clause clause) {
-        Pair<Node, Node> edge = new Pair<>(from, to);
-        if (edgeMap.containsKey(edge)) {
-            return;
+    public IntList analyzeConflict(int conflictedClause, int decisionLevel) {
+        learntClause.clear();
+        analyzedLearntClauses.clear();
+
+        // Conflict without any decision cannot be resolved
+        if (decisionLevel == 0) {
+            backtrackLevel = -1;
+            return learntClause;
         }
-        edgeMap.put(edge, clause);
-    }
 
-    /**
-     * Perform conflict analysis based on the information of the graph.
-     * @param conflictedClause clause that is conflicted
-     * @param conflictedVariable assigned variable that caused the conflict
-     * @param decisionLevel decision level during the conflict
-     * @return learnt clause
-     */
-    public Clause analyzeConflict(Clause conflictedClause, Variable conflictedVariable, int decisionLevel) {
-        Set<Clause> analyzedClauses = new HashSet<>();
+        // Reserve index 0 for the asserting literal
+        learntClause.add(LiteralUtil.UNDEFINED);
+
+        int pathCount = 0;
+        int literal = LiteralUtil.UNDEFINED;
+        int index = trailSize - 1;
+        int clause = conflictedClause;
 
-        Clause learntClause = new Clause(conflictedClause);
+        do {
+            if (Config.logging == Config.Logging.DEBUG) {
+                System.out.println(String.format("Resolve on %s with %s",
+                        literal == LiteralUtil.UNDEFINED ? "conflict" : nodeToString(literal),
+                        reasonToString(clause, literal)));
+            }
+            if (!isBinaryReason(clause) && arena.isLearnt(clause)) {
+                analyzedLearntClauses.add(clause);
+            }
 
-        Set<Clause> clausesToAnalyze = new HashSet<>();
-        Set<String> visitedVariables = new HashSet<>();
+            for (int i = 0; i < reasonSize(clause); ++i) {
+                int q = reasonLiteral(clause, i);
+                int variable = LiteralUtil.getVariable(q);
+                if (q == literal || seen[variable] || levels[variable] == 0) {
+                    continue;
+                }
+                seen[variable] = true;
+                if (levels[variable] >= decisionLevel) {
+                    ++pathCount;
+                } else {
+                    learntClause.add(q);
+                }
+            }
 
-        List<Node> nodesList = new ArrayList<>();
+            // Next marked literal of the conflict level on the trail
+            while (!seen[LiteralUtil.getVariable(trail[index])]) {
+                --index;
+            }
+            literal = trail[index--];
+            clause = reasons[LiteralUtil.getVariable(literal)];
+            seen[LiteralUtil.getVariable(literal)] = false;
+            --pathCount;
+        } while (pathCount > 0);
+
+        learntClause.set(0, LiteralUtil.negate(literal));
+
+        minimizeLearntClause();
+        lbd = computeLbd(learntClause);
+
+        // Backtrack to the highest decision level among the other literals, which is moved to index 1
+        backtrackLevel = 0;
+        for (int i = 1; i < learntClause.size(); ++i) {
+            int variable = LiteralUtil.getVariable(learntClause.get(i));
+            if (levels[variable] > backtrackLevel) {
+                backtrackLevel = levels[variable];
+                int tmp = learntClause.get(1);
+                learntClause.set(1, learntClause.get(i));
+                learntClause.set(i, tmp);
+            }
+        }
 
-        backtrackLevel = decisionLevel;
+        if (Config.logging == Config.Logging.DEBUG) {
+            System.out.println(String.format("--> %s\n", literalsToString(learntClause)));
+        }
 
-        Node conflictedNode = new Node(conflictedVariable, decisionLevel);
-        nodesList.add(conflictedNode);
-        while (!nodesList.isEmpty()) {
-            Node nodeToLookAt = nodesList.get(0);
-            nodesList.remove(nodeToLookAt);
+        return learntClause;
+    }
 
-            for (Pair<Node, Node> key : edgeMap.keySet()) {
-                Clause clause = edgeMap.get(key);
-                if (nodeToLookAt.getDecisionLevel() == decisionLevel
-                        && key.getSecond().equals(nodeToLookAt)
-                        && !analyzedClauses.contains(clause)) {
-                    clausesToAnalyze.add(clause);
-                }
+    /**
+     * Count the distinct decision levels of assigned literals.
+     * @param literals assigned literals
+     * @return literal block distance
+     */
+    public int computeLbd(IntList literals) {
+        ++stamp;
+        int count = 0;
+        for (int i = 0; i < literals.size(); ++i) {
+            int level = levels[LiteralUtil.getVariable(literals.get(i))];
+            if (levelStamps[level] != stamp) {
+                levelStamps[level] = stamp;
+                ++count;
             }
+        }
+        return count;
+    }
 
-            visitedVariables.add(nodeToLookAt.getVariable().getName());
-
-            if (clausesToAnalyze.isEmpty()) {
-                backtrackLevel = nodeToLookAt.getDecisionLevel();
+    /**
+     * Count the distinct decision levels of a clause whose literals are all assigned.
+     * @param cref clause reference
+     * @return literal block distance
+     */
+    public int computeLbd(int cref) {
+        ++stamp;
+        int count = 0;
+        for (int i = 0; i < arena.size(cref); ++i) {
+            int level = levels[LiteralUtil.getVariable(arena.literal(cref, i))];
+            if (levelStamps[level] != stamp) {
+                levelStamps[level] = stamp;
+                ++count;
             }
+        }
+        return count;
+    }
 
-            for (Clause clause : clausesToAnalyze) {
-                for (Literal l : clause.getLiterals()) {
-                    if (!visitedVariables.contains(l.getName())) {
-                        nodesList.add(assignedNodes.get(l.getName()));
-                    }
-                }
-                if (Config.logging == Config.Logging.DEBUG) {
-                    System.out.println(
-                            String.format("Resolve %s with %s \n",
-                                    learntClause.toString(), clause.toString()));
-                }
-                learntClause = SolverUtil.performResolution(learntClause, clause);
-                if (Config.logging == Config.Logging.DEBUG) {
-                    System.out.println(String.format("--> %s\n", learntClause.toString()));
+    /**
+     * Remove redundant literals from the learnt clause by self-subsuming resolution. A literal is redundant if it is
+     * implied by the other literals of the clause: with local minimization, when every other literal of its reason is
+     * in the clause; with recursive minimization, when every literal of its reason is in the clause or is redundant
+     * itself. The asserting literal at index 0 is never removed. Clears the {@code seen} marks of the analysis.
+     */
+    private void minimizeLearntClause() {
+        analyzeToClear.clear();
+        for (int i = 1; i < learntClause.size(); ++i) {
+            analyzeToClear.add(learntClause.get(i));
+        }
+
+        int originalSize = learntClause.size();
+        int j = 1;
+        if (Config.minimization == Config.Minimization.RECURSIVE) {
+            // Decision levels of the clause, used to fail early on literals from other levels
+            int abstractLevels = 0;
+            for (int i = 1; i < learntClause.size(); ++i) {
+                abstractLevels |= abstractLevel(LiteralUtil.getVariable(learntClause.get(i)));
+            }
+            for (int i = 1; i < learntClause.size(); ++i) {
+                int l = learntClause.get(i);
+                if (reasons[LiteralUtil.getVariable(l)] == ClauseArena.NO_CLAUSE || !isRedundant(l, abstractLevels)) {
+                    learntClause.set(j++, l);
                 }
-                analyzedClauses.add(clause);
             }
-            clausesToAnalyze.clear();
-
-            // Check if we are at an implication point where we can stop
-            // i.e. only left with 1 node with decisionLevel
-            int count = 0;
-            List<Integer> decisionLevels = new ArrayList<>();
-            for (Literal l : learntClause.getLiterals()) {
-                Node n = assignedNodes.get(l.getName());
-                if (n.getDecisionLevel() == decisionLevel) {
-                    ++count;
-                } else {
-                    decisionLevels.add(n.getDecisionLevel());
+        } else if (Config.minimization == Config.Minimization.LOCAL) {
+            for (int i = 1; i < learntClause.size(); ++i) {
+                int l = learntClause.get(i);
+                if (!isLocallyRedundant(l)) {
+                    learntClause.set(j++, l);
                 }
             }
+        } else {
+            j = learntClause.size();
+        }
+        learntClause.shrink(j);
+
+        learntLiteralCount = originalSize;
+        minimizedLiteralCount = originalSize - j;
+
+        for (int i = 0; i < analyzeToClear.size(); ++i) {
+            seen[LiteralUtil.getVariable(analyzeToClear.get(i))] = false;
+        }
+    }
+
+    /**
+     * Check if every other literal of the reason of a literal is in the learnt clause or assigned at level 0.
+     * @param literal literal of the learnt clause
+     * @return true if the literal can be removed, false otherwise
+     */
+    private boolean isLocallyRedundant(int literal) {
+        int variable = LiteralUtil.getVariable(literal);
+        int reason = reasons[variable];
+        if (reason == ClauseArena.NO_CLAUSE) {
+            return false;
+        }
+        for (int i = 0; i < reasonSize(reason); ++i) {
+            int other = LiteralUtil.getVariable(reasonLiteral(reason, i));
+            if (other != variable && !seen[other] && levels[other] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-            if (count == 1) {
-                --backtrackLevel;
-                for (int level : decisionLevels) {
-                    if (level >= decisionLevel) {
-                        continue;
+    /**
+     * Check if a literal is implied by the learnt clause through its reasons, walking the reasons with an explicit
+     * stack. Variables found redundant stay marked in {@code seen} so later checks reuse them.
+     * @param literal literal of the learnt clause
+     * @param abstractLevels bit set of the decision levels in the learnt clause
+     * @return true if the literal can be removed, false otherwise
+     */
+    private boolean isRedundant(int literal, int abstractLevels) {
+        analyzeStack.clear();
+        analyzeStack.add(literal);
+        int top = analyzeToClear.size();
+        while (!analyzeStack.isEmpty()) {
+            int variable = LiteralUtil.getVariable(analyzeStack.removeLast());
+            int reason = reasons[variable];
+            for (int i = 0; i < reasonSize(reason); ++i) {
+                int l = reasonLiteral(reason, i);
+                int other = LiteralUtil.getVariable(l);
+                if (other == variable || seen[other] || levels[other] == 0) {
+                    continue;
+                }
+                if (reasons[other] != ClauseArena.NO_CLAUSE && (abstractLevel(other) & abstractLevels) != 0) {
+                    seen[other] = true;
+                    analyzeStack.add(l);
+                    analyzeToClear.add(l);
+                } else {
+                    for (int k = top; k < analyzeToClear.size(); ++k) {
+                        seen[LiteralUtil.getVariable(analyzeToClear.get(k))] = false;
                     }
-                    backtrackLevel = Math.max(level, backtrackLevel);
+                    analyzeToClear.shrink(top);
+                    return false;
                 }
-                break;
             }
-
-            nodesList.sort((Node one, Node two) -> Integer.compare(one.getDecisionLevel(), two.getDecisionLevel()) * -1);
         }
+        return true;
+    }
 
-        return learntClause;
+    private int abstractLevel(int variable) {
+        return 1 << (levels[variable] & 31);
     }
 
     /**
-     * Checks if there are any unassigned variables.
-     * @return true if there are unassigned variables, false otherwise.
+     * Get number of literals of the last learnt clause before minimization.
+     * @return number of literals
      */
-    private boolean hasUnassignedVariable() {
-        return !unassignedVariables.isEmpty();
+    public int getLearntLiteralCount() {
+        return learntLiteralCount;
     }
 
     /**
-     * Get next unassigned variable.
-     * @param random specify if to pick a variable randomly
-     * @return an unassigned variable
+     * Get number of literals removed from the last learnt clause by minimization.
+     * @return number of literals removed
      */
-    public Variable getNextUnassignedVariable(boolean random) {
-        if (!hasUnassignedVariable()) {
-            return null;
-        }
+    public int getMinimizedLiteralCount() {
+        return minimizedLiteralCount;
+    }
 
-        String[] variableNames = new String[unassignedVariables.size()];
-        unassignedVariables.toArray(variableNames);
-        int index = 0;
-        if (random) {
-            Random rand = new Random(System.currentTimeMillis());
-            index = rand.nextInt(variableNames.length);
-        }
-        return new Variable(variableNames[index], true);
+    /**
+     * Get the learnt clauses resolved by the last {@code analyzeConflict}, including the conflicted clause.
+     * @return references of the learnt clauses, valid until the next analysis
+     */
+    public IntList getAnalyzedLearntClauses() {
+        return analyzedLearntClauses;
     }
 
     /**
-     * Get net unassigned variable.
-     * @param literalCountMap literal count map that contains number of literals in puzzle
-     * @return an unassigned variable
+     * Check if a clause is the reason of an assignment, in which case it must not be deleted.
+     * @param cref clause reference
+     * @return true if the clause is a reason, false otherwise
      */
-    public Variable getNextUnassignedVariable(Map<String, Integer> literalCountMap) {
-        List<Pair<Integer, String>> unassignedLiteralCountList = new ArrayList<>();
+    public boolean isReason(int cref) {
+        int literal = arena.literal(cref, 0);
+        return getValue(literal) == TRUE && reasons[LiteralUtil.getVariable(literal)] == cref;
+    }
 
-        List<String> unassignedMoreThanTwoClauseLiterals = new ArrayList<>();
-        for (String unassigned : unassignedVariables) {
-            if (!literalCountMap.containsKey(unassigned)) {
-                unassignedMoreThanTwoClauseLiterals.add(unassigned);
-                continue;
+    /**
+     * Update the reasons of assigned variables after the arena has been compacted.
+     */
+    public void relocateReasons() {
+        for (int i = 0; i < trailSize; ++i) {
+            int variable = LiteralUtil.getVariable(trail[i]);
+            if (reasons[variable] != ClauseArena.NO_CLAUSE && !isBinaryReason(reasons[variable])) {
+                reasons[variable] = arena.relocate(reasons[variable]);
             }
-            Pair<Integer, String> pair = new Pair<>(literalCountMap.get(unassigned), unassigned);
-            unassignedLiteralCountList.add(pair);
         }
+    }
 
-        unassignedLiteralCountList.sort(
-                (Pair<Integer, String> first, Pair<Integer, String> second)
-                        -> first.getFirst().compareTo(second.getFirst()) * -1);
+    /**
+     * Get literal block distance of the clause learnt by the last {@code analyzeConflict}.
+     * @return literal block distance
+     */
+    public int getLbd() {
+        return lbd;
+    }
 
-        String selected;
-        if (!unassignedLiteralCountList.isEmpty()) {
-            selected = unassignedLiteralCountList.get(0).getSecond();
-        } else {
-            selected = unassignedMoreThanTwoClauseLiterals.get(0);
+    /**
+     * Get the literal to decide for a variable, according to {@code Config.phase}.
+     * @param variable unassigned variable
+     * @return literal of the variable to make true
+     */
+    public int getDecisionLiteral(int variable) {
+        if (Config.phase == Config.Phase.POSITIVE) {
+            return LiteralUtil.toLiteral(variable, true);
         }
-        return new Variable(selected, true);
+        return LiteralUtil.toLiteral(variable, savedPhases[variable] != FALSE);
     }
 
     /**
-     * Get conflicted clause.
-     * @param clauses clauses in the puzzle
-     * @return conflicted clause
+     * Overwrite the saved phases of all variables.
+     * @param rephase kind of rephasing
      */
-    public Clause getConflictedClause(Set<Clause> clauses) {
-        for (Clause c : clauses) {
-            boolean conflicted = true;
-
-            for (Literal l : c.getLiterals()) {
-                Boolean assignment = getAssignment(l.getName());
-                // If no assignment yet, or the assignment satisfies the literal, then it is not conflicted
-                if (assignment == null || l.isSatisfied(assignment)) {
-                    conflicted = false;
+    public void rephase(Rephase rephase) {
+        for (int v = 0; v < savedPhases.length; ++v) {
+            switch (rephase) {
+                case ORIGINAL:
+                    savedPhases[v] = TRUE;
                     break;
-                }
+                case INVERTED:
+                    savedPhases[v] = FALSE;
+                    break;
+                case BEST:
+                    // Variables never assigned on the best trail keep their saved phase
+                    if (bestPhases[v] != UNASSIGNED) {
+                        savedPhases[v] = bestPhases[v];
+                    }
+                    break;
+                case RANDOM:
+                    savedPhases[v] = random.nextBoolean() ? TRUE : FALSE;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (rephase == Rephase.BEST) {
+            bestTrailSize = 0;
+        }
+    }
+
+    /**
+     * Get next unassigned variable.
+     * @param random specify if to pick a variable randomly
+     * @return decision literal of an unassigned variable, or {@code LiteralUtil.UNDEFINED} if all are assigned
+     */
+    public int getNextUnassignedVariable(boolean random) {
+        int numberOfUnassigned = assignments.length - trailSize;
+        if (numberOfUnassigned == 0) {
+            return LiteralUtil.UNDEFINED;
+        }
+
+        int index = 0;
+        if (random) {
+            index = this.random.nextInt(numberOfUnassigned);
+        }
+        for (int v = 0; v < assignments.length; ++v) {
+            if (assignments[v] != UNASSIGNED) {
+                continue;
             }
-            if (conflicted) {
-                return c;
+            if (index == 0) {
+                return getDecisionLiteral(v);
             }
+            --index;
         }
-        return null;
+        return LiteralUtil.UNDEFINED;
     }
 
     /**
-     * Return map of assignments for the clause
-     * @param c clause to retrieve assignment map
-     * @return map of assignments
+     * Get next unassigned variable that appears in the most clauses.
+     * @param literalCounts number of clauses each variable appears in, indexed by variable
+     * @return decision literal of an unassigned variable, or {@code LiteralUtil.UNDEFINED} if all are assigned
      */
-    public HashMap<String, Boolean> getAssignmentForClause(Clause c) {
-        HashMap<String, Boolean> result = new HashMap<>();
-        for (Literal l : c.getLiterals()) {
-            Boolean assignment = getAssignment(l.getName());
-            if (assignment == null) {
+    public int getNextUnassignedVariable(IntList literalCounts) {
+        int selected = LiteralUtil.UNDEFINED;
+        int maxCount = -1;
+        for (int v = 0; v < assignments.length; ++v) {
+            if (assignments[v] != UNASSIGNED) {
                 continue;
             }
-            result.put(l.getName(), assignment);
+            if (literalCounts.get(v) > maxCount) {
+                selected = v;
+                maxCount = literalCounts.get(v);
+            }
         }
-        return result;
+        if (selected == LiteralUtil.UNDEFINED) {
+            return LiteralUtil.UNDEFINED;
+        }
+        return getDecisionLiteral(selected);
+    }
+
+    /**
+     * Get value of a literal under the current assignment.
+     * @param literal integer encoded literal
+     * @return {@code TRUE}, {@code FALSE} or {@code UNASSIGNED}
+     */
+    public byte getValue(int literal) {
+        byte assignment = assignments[LiteralUtil.getVariable(literal)];
+        return LiteralUtil.isPositive(literal) ? assignment : (byte) -assignment;
+    }
+
+    public boolean isAssigned(int variable) {
+        return assignments[variable] != UNASSIGNED;
     }
 
     /**
-     * Get assignment of variable.
-     * @param variableName variable to get assignment
-     * @return assignment of variable
+     * Get decision level at which a variable was assigned.
+     * @param variable variable to get decision level
+     * @return decision level of the assignment, or -1 if the variable is unassigned
      */
-    public Boolean getAssignment(String variableName) {
-        if (!assignedVariables.containsKey(variableName)) {
-            return null;
+    public int getDecisionLevel(int variable) {
+        if (assignments[variable] == UNASSIGNED) {
+            return -1;
         }
-        return assignedVariables.get(variableName);
+        return levels[variable];
+    }
+
+    /**
+     * Get reason clause of an assigned variable.
+     * @param variable variable to get reason
+     * @return reference of the clause that implied the variable, a {@code binaryReason}, or
+     * {@code ClauseArena.NO_CLAUSE} if it was decided
+     */
+    public int getReason(int variable) {
+        return reasons[variable];
     }
 
     /**
@@ -367,35 +730,44 @@ public class ImplicationGraph {
      * @return true if all variables are assigned, false otherwise
      */
     public boolean allVariablesAssigned(int numOfVariables) {
-        return assignedVariables.size() == numOfVariables;
+        return trailSize == numOfVariables;
     }
 
     public void reset() {
-        edgeMap.clear();
-        unassignedVariables.clear();
-        assignedVariables.clear();
-        assignedNodes.clear();
+        assignments = new byte[0];
+        reasons = new int[0];
+        levels = new int[0];
+        trail = new int[0];
+        trailSize = 0;
+        trailLimits.clear();
+        savedPhases = new byte[0];
+        bestPhases = new byte[0];
+        bestTrailSize = 0;
     }
 
     /**
-     * Get assignment map.
-     * @return assignment map.
+     * Return assigned variables in string.
+     * @return string of assigned variables
      */
-    public Map<String, Boolean> getAssignments() {
-        return assignedVariables;
+    public String assignmentsToString() {
+        return assignmentsToString(assignments);
     }
 
     /**
-     * Return assigned variables in string.
+     * Return variable values in string.
+     * @param values value of each variable, indexed by variable
      * @return string of assigned variables
      */
-    public String assignmentsToString() {
+    public String assignmentsToString(byte[] values) {
         StringBuilder sb = new StringBuilder();
 
-        for (String key : assignedVariables.keySet()) {
-            sb.append(key);
+        for (int v = 0; v < values.length; ++v) {
+            if (values[v] == UNASSIGNED) {
+                continue;
+            }
+            sb.append(variableNames.get(v));
             sb.append(" ");
-            sb.append(assignedVariables.get(key).toString());
+            sb.append(values[v] == TRUE);
             sb.append("\n");
         }
 
@@ -403,17 +775,87 @@ public class ImplicationGraph {
     }
 
     /**
-     * Return edges in string.
+     * Get a copy of the value of every variable.
+     * @return value of each variable, indexed by variable
+     */
+    public byte[] getAssignments() {
+        return Arrays.copyOf(assignments, assignments.length);
+    }
+
+    /**
+     * Return edges in string. The edges are rebuilt from the reason clauses of the assignments on the trail.
      * @return string of edges
      */
     public String edgesToString() {
         StringBuilder sb = new StringBuilder();
 
-        for (Pair<Node, Node> key : edgeMap.keySet()) {
-            sb.append(key.getFirst()).append(" -> ").append(key.getSecond());
-            sb.append(": ").append(edgeMap.get(key).toString());
-            sb.append("\n");
+        for (int i = 0; i < trailSize; ++i) {
+            int literal = trail[i];
+            int reason = reasons[LiteralUtil.getVariable(literal)];
+            if (reason == ClauseArena.NO_CLAUSE) {
+                continue;
+            }
+            for (int j = 0; j < reasonSize(reason); ++j) {
+                int antecedent = reasonLiteral(reason, j);
+                if (antecedent == literal) {
+                    continue;
+                }
+                sb.append(nodeToString(LiteralUtil.negate(antecedent))).append(" -> ").append(nodeToString(literal));
+                sb.append(": ").append(reasonToString(reason, literal));
+                sb.append("\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    private String nodeToString(int literal) {
+        return String.format("Decision level: %d Variable: %s %s", levels[LiteralUtil.getVariable(literal)],
+                variableNames.get(LiteralUtil.getVariable(literal)), LiteralUtil.isPositive(literal));
+    }
+
+    /**
+     * Return literals in string using the variable names.
+     * @param literals integer encoded literals
+     * @return string of literals
+     */
+    public String literalsToString(IntList literals) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < literals.size(); ++i) {
+            int l = literals.get(i);
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(LiteralUtil.isPositive(l) ? "" : "-").append(variableNames.get(LiteralUtil.getVariable(l)));
         }
         return sb.toString();
     }
+
+    /**
+     * Return the reason of an implied literal in string using the variable names.
+     * @param reason clause reference or binary reason
+     * @param literal implied literal
+     * @return string of the reason clause
+     */
+    private String reasonToString(int reason, int literal) {
+        if (!isBinaryReason(reason)) {
+            return clauseToString(reason);
+        }
+        IntList literals = new IntList(2);
+        literals.add(literal);
+        literals.add(reasonLiteral(reason, 0));
+        return literalsToString(literals);
+    }
+
+    /**
+     * Return clause in string using the variable names.
+     * @param cref clause reference
+     * @return string of clause
+     */
+    public String clauseToString(int cref) {
+        IntList literals = new IntList(arena.size(cref));
+        for (int i = 0; i < arena.size(cref); ++i) {
+            literals.add(arena.literal(cref, i));
+        }
+        return literalsToString(literals);
+    }
 }
@@ -0,0 +1,81 @@
+package datastruct;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints, used in place of {@code List<Integer>} to avoid boxing.
+ */
+public class IntList {
+    private int[] data;
+    private int size;
+
+    public IntList() {
+        this(8);
+    }
+
+    public IntList(int capacity) {
+        data = new int[Math.max(capacity, 1)];
+        size = 0;
+    }
+
+    /**
+     * Create a copy of a list.
+     * @param other list to copy
+     */
+    public IntList(IntList other) {
+        data = Arrays.copyOf(other.data, Math.max(other.size, 1));
+        size = other.size;
+    }
+
+    public void add(int value) {
+        if (size == data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        data[size++] = value;
+    }
+
+    /**
+     * Remove and return the last element.
+     * @return last element
+     */
+    public int removeLast() {
+        return data[--size];
+    }
+
+    public int get(int index) {
+        return data[index];
+    }
+
+    public void set(int index, int value) {
+        data[index] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Drop every element from index {@code newSize} onwards.
+     * @param newSize new size of the list, must not be larger than the current size
+     */
+    public void shrink(int newSize) {
+        size = newSize;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
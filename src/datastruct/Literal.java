@@ -1,5 +1,7 @@
 package datastruct;
 
+import java.util.Objects;
+
 /**
  * A data structure that represents a literal in CNF. It can represent a positive or negative literal denoted by a
  * boolean.
@@ -39,6 +41,11 @@ public class Literal {
         return this.name.equals(other.name) && this.isPositive == other.isPositive;
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, isPositive);
+    }
+
     @Override
     public String toString() {
         return String.format("%s%s", isPositive ? "" : "-", name);
@@ -1,5 +1,7 @@
 package datastruct;
 
+import java.util.Objects;
+
 public class Pair<F, S> {
     private F first;
     private S second;
@@ -24,6 +26,11 @@ public class Pair<F, S> {
         }
 
         Pair other = (Pair) obj;
-        return this.first == other.first && this.second == other.second;
+        return Objects.equals(this.first, other.first) && Objects.equals(this.second, other.second);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(first, second);
     }
 }
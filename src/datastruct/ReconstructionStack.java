@@ -0,0 +1,97 @@
+package datastruct;
+
+import util.LiteralUtil;
+
+/**
+ * Clauses removed by preprocessing that may be falsified by a model of the simplified formula, each with the literal
+ * to make true when it is. Walking the stack from the last clause to the first turns a model of the simplified
+ * formula into a model of the original formula.
+ */
+public class ReconstructionStack {
+
+    /**
+     * Entries stored back to back: the pivot literal, the other literals of the clause, then the number of literals.
+     */
+    private IntList stack;
+
+    public ReconstructionStack() {
+        stack = new IntList();
+    }
+
+    /**
+     * Create a copy of a reconstruction stack.
+     * @param other stack to copy
+     */
+    public ReconstructionStack(ReconstructionStack other) {
+        stack = new IntList(other.stack);
+    }
+
+    /**
+     * Push a removed clause.
+     * @param pivot literal of the clause to make true if the clause is falsified
+     * @param arena arena that stores the clause
+     * @param cref reference of the clause, which contains the pivot
+     */
+    public void push(int pivot, ClauseArena arena, int cref) {
+        stack.add(pivot);
+        for (int i = 0; i < arena.size(cref); ++i) {
+            int literal = arena.literal(cref, i);
+            if (literal != pivot) {
+                stack.add(literal);
+            }
+        }
+        stack.add(arena.size(cref));
+    }
+
+    /**
+     * Push a removed clause.
+     * @param pivot literal of the clause to make true if the clause is falsified
+     * @param literals other literals of the clause
+     */
+    public void push(int pivot, IntList literals) {
+        stack.add(pivot);
+        for (int i = 0; i < literals.size(); ++i) {
+            stack.add(literals.get(i));
+        }
+        stack.add(literals.size() + 1);
+    }
+
+    /**
+     * Extend a model of the simplified formula to a model of the original formula.
+     * @param values value of each variable, {@code ImplicationGraph.TRUE} or {@code ImplicationGraph.FALSE}, which
+     *               is updated for the variables removed by preprocessing
+     */
+    public void extend(byte[] values) {
+        int end = stack.size();
+        while (end > 0) {
+            int size = stack.get(end - 1);
+            int start = end - 1 - size;
+            boolean satisfied = false;
+            for (int i = start; i < end - 1; ++i) {
+                if (isTrue(values, stack.get(i))) {
+                    satisfied = true;
+                    break;
+                }
+            }
+            if (!satisfied) {
+                int pivot = stack.get(start);
+                values[LiteralUtil.getVariable(pivot)] =
+                        LiteralUtil.isPositive(pivot) ? ImplicationGraph.TRUE : ImplicationGraph.FALSE;
+            }
+            end = start;
+        }
+    }
+
+    public boolean isEmpty() {
+        return stack.isEmpty();
+    }
+
+    public void clear() {
+        stack.clear();
+    }
+
+    private static boolean isTrue(byte[] values, int literal) {
+        byte value = values[LiteralUtil.getVariable(literal)];
+        return value == (LiteralUtil.isPositive(literal) ? ImplicationGraph.TRUE : ImplicationGraph.FALSE);
+    }
+}
@@ -0,0 +1,152 @@
+package datastruct;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary max-heap of variables ordered by activity. The position of every variable in the heap is tracked,
+ * so membership checks are O(1) and a variable whose activity increased can be moved up in O(log n).
+ */
+public class VariableHeap {
+    private static final int NOT_IN_HEAP = -1;
+
+    /**
+     * Activity of each variable, indexed by variable. Owned by the caller, which must call {@code increase} after
+     * raising an activity. Scaling all activities by the same positive factor keeps the heap valid.
+     */
+    private double[] activity;
+
+    private int[] heap;
+    private int size;
+
+    /**
+     * Position of each variable in {@code heap}, or {@code NOT_IN_HEAP}.
+     */
+    private int[] indices;
+
+    public VariableHeap(double[] activity) {
+        this.activity = activity;
+        heap = new int[activity.length];
+        indices = new int[activity.length];
+        Arrays.fill(indices, NOT_IN_HEAP);
+        size = 0;
+    }
+
+    /**
+     * Make room for variables added after construction, which are not inserted.
+     * @param activity activity of each variable, replacing the previous array
+     */
+    public void grow(double[] activity) {
+        int size = indices.length;
+        this.activity = activity;
+        heap = Arrays.copyOf(heap, activity.length);
+        indices = Arrays.copyOf(indices, activity.length);
+        Arrays.fill(indices, size, indices.length, NOT_IN_HEAP);
+    }
+
+    public boolean contains(int variable) {
+        return indices[variable] != NOT_IN_HEAP;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Insert a variable if it is not in the heap yet.
+     * @param variable variable
+     */
+    public void insert(int variable) {
+        if (contains(variable)) {
+            return;
+        }
+        heap[size] = variable;
+        indices[variable] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Restore the heap order after the activity of a variable increased. Does nothing if the variable is not in the
+     * heap.
+     * @param variable variable
+     */
+    public void increase(int variable) {
+        if (contains(variable)) {
+            siftUp(indices[variable]);
+        }
+    }
+
+    /**
+     * Restore the heap order after the activity of a variable changed in either direction. Does nothing if the
+     * variable is not in the heap.
+     * @param variable variable
+     */
+    public void update(int variable) {
+        if (contains(variable)) {
+            siftUp(indices[variable]);
+            siftDown(indices[variable]);
+        }
+    }
+
+    /**
+     * Remove and return the variable with the highest activity.
+     * @return variable with the highest activity
+     */
+    public int removeMax() {
+        int max = heap[0];
+        indices[max] = NOT_IN_HEAP;
+        --size;
+        if (size > 0) {
+            heap[0] = heap[size];
+            indices[heap[0]] = 0;
+            siftDown(0);
+        }
+        return max;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; ++i) {
+            indices[heap[i]] = NOT_IN_HEAP;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int position) {
+        int variable = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >> 1;
+            if (activity[heap[parent]] >= activity[variable]) {
+                break;
+            }
+            heap[position] = heap[parent];
+            indices[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = variable;
+        indices[variable] = position;
+    }
+
+    private void siftDown(int position) {
+        int variable = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && activity[heap[child + 1]] > activity[heap[child]]) {
+                ++child;
+            }
+            if (activity[heap[child]] <= activity[variable]) {
+                break;
+            }
+            heap[position] = heap[child];
+            indices[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = variable;
+        indices[variable] = position;
+    }
+}
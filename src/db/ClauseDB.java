@@ -1,33 +1,122 @@
 package db;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import callback.ProofOutput;
+import config.Config;
 import datastruct.Clause;
+import datastruct.ClauseArena;
+import datastruct.DirectClauseArena;
+import datastruct.HeapClauseArena;
+import datastruct.IntList;
 import datastruct.Literal;
+import datastruct.ReconstructionStack;
+import util.LiteralUtil;
 
+/**
+ * Database of clauses. Clauses are stored with integer encoded literals in a {@code ClauseArena}, which is what the
+ * solvers work on. {@code Clause} objects remain available as a view for callers.
+ */
 public class ClauseDB {
 
-    private Set<Clause> clauses;
+    /**
+     * Prefix of the names of auxiliary variables, which only appear in logging.
+     */
+    private static final String AUXILIARY_PREFIX = "@";
+
+    /**
+     * Number of clauses read from the CNF, which preprocessing does not change.
+     */
+    private int numberOfClauses;
+
+    private ClauseArena arena;
+    private IntList clauseReferences;
+    private IntList learntClauseReferences;
+    private int lastLearntClause;
+
+    /**
+     * Dense index of each variable name, and variable name of each index.
+     */
+    private Map<String, Integer> variableIndices;
+    private List<String> variableNames;
 
-    private Set<String> literals;
+    private IntList twoClauseLiteralCounts;
+    private IntList literalCounts;
 
-    private List<Clause> learntClauses;
-    private Clause lastLearntClause;
+    /**
+     * Whether each variable was eliminated by preprocessing (1) or not (0), indexed by variable. Eliminated
+     * variables no longer occur in any clause, and their values are restored with {@code reconstructionStack}.
+     */
+    private IntList eliminated;
+    private ReconstructionStack reconstructionStack;
+
+    /**
+     * Whether each variable was added by preprocessing (1) or comes from the CNF (0), indexed by variable. Added
+     * variables are left out of the model.
+     */
+    private IntList auxiliary;
+    private int auxiliaryCount;
 
-    private Map<String, Integer> twoClauseLiteralCountMap;
-    private Map<String, Integer> literalCountMap;
+    /**
+     * Proof that clauses derived from the CNF, learnt or deleted are written to, or null if no proof is written.
+     */
+    private ProofOutput proof;
+
+    /**
+     * Variable of each variable in the proof, indexed by variable, or 0 if not numbered yet. Variables of the CNF keep
+     * their names, and auxiliary variables are numbered after the highest of them.
+     */
+    private int[] proofVariables;
+    private int lastProofVariable;
+    private int[] proofClause;
 
     public ClauseDB() {
-        clauses = new HashSet<>();
-        literals = new HashSet<>();
-        learntClauses = new ArrayList<>();
-        twoClauseLiteralCountMap = new HashMap<>();
-        literalCountMap = new HashMap<>();
+        numberOfClauses = 0;
+        arena = Config.clauseStore == Config.ClauseStore.DIRECT ? new DirectClauseArena() : new HeapClauseArena();
+        clauseReferences = new IntList();
+        learntClauseReferences = new IntList();
+        lastLearntClause = ClauseArena.NO_CLAUSE;
+        variableIndices = new HashMap<>();
+        variableNames = new ArrayList<>();
+        twoClauseLiteralCounts = new IntList();
+        literalCounts = new IntList();
+        eliminated = new IntList();
+        reconstructionStack = new ReconstructionStack();
+        auxiliary = new IntList();
+        auxiliaryCount = 0;
+    }
+
+    /**
+     * Create a copy of the CNF in a database, with its variables and the state left by preprocessing, so that
+     * solvers on different threads can each work on their own copy. Learnt clauses are not copied.
+     * @param other database to copy
+     */
+    public ClauseDB(ClauseDB other) {
+        this();
+        numberOfClauses = other.numberOfClauses;
+        variableIndices.putAll(other.variableIndices);
+        variableNames.addAll(other.variableNames);
+        for (int v = 0; v < variableNames.size(); ++v) {
+            literalCounts.add(0);
+            twoClauseLiteralCounts.add(0);
+        }
+        eliminated = new IntList(other.eliminated);
+        auxiliary = new IntList(other.auxiliary);
+        auxiliaryCount = other.auxiliaryCount;
+        reconstructionStack = new ReconstructionStack(other.reconstructionStack);
+        IntList references = other.getClauseReferences();
+        for (int i = 0; i < references.size(); ++i) {
+            int[] literals = other.arena.getLiterals(references.get(i));
+            int cref = arena.allocate(literals, literals.length, false);
+            clauseReferences.add(cref);
+            updateLiteralCount(cref, 1);
+        }
     }
 
     /**
@@ -35,87 +124,383 @@ public class ClauseDB {
      * @param clause clause
      */
     public void insertClause(Clause clause) {
-        clauses.add(clause);
+        IntList literals = new IntList(clause.getNumberOfLiterals());
         for (Literal l : clause.getLiterals()) {
-            literals.add(l.getName());
+            literals.add(toLiteral(l));
         }
-        updateLiteralCount(clause);
+        insertCnfClause(literals);
+    }
+
+    /**
+     * Insert a clause read from the CNF, which counts towards the number of clauses of the CNF.
+     * @param literals literals of the clause
+     * @return reference of the clause
+     */
+    public int insertCnfClause(IntList literals) {
+        ++numberOfClauses;
+        return insertInputClause(literals);
     }
 
-    public void insertLearntClause(Clause clause) {
-        if (learntClauses.contains(clause)) {
-            throw new IllegalStateException("Clause already learnt");
+    /**
+     * Insert a clause derived from the clauses of the CNF, such as a resolvent added by preprocessing.
+     * @param literals literals of the clause
+     * @return reference of the clause
+     */
+    public int insertClause(IntList literals) {
+        int cref = insertInputClause(literals);
+        if (proof != null) {
+            writeProof(cref, false);
         }
-        lastLearntClause = clause;
-        learntClauses.add(clause);
-        insertClause(clause);
+        return cref;
     }
 
-    private void updateLiteralCount(Clause clause) {
-        int size = clause.getNumberOfLiterals();
-        for (Literal l : clause.getLiterals()) {
-            String lName = l.getName();
+    /**
+     * Insert a clause of the CNF given after parsing, such as a clause added between incremental calls. Unlike
+     * {@code insertClause}, the clause is not written to the proof.
+     * @param literals literals of the clause
+     * @return reference of the clause
+     */
+    public int insertInputClause(IntList literals) {
+        int cref = arena.allocate(literals, false);
+        clauseReferences.add(cref);
+        updateLiteralCount(cref, 1);
+        return cref;
+    }
 
-            if (!literalCountMap.containsKey(lName)) {
-                literalCountMap.put(lName, 0);
+    /**
+     * Insert a learnt clause into database.
+     * @param literals literals of the clause
+     * @param lbd literal block distance of the clause when it was learnt
+     * @return reference of the learnt clause
+     */
+    public int insertLearntClause(IntList literals, int lbd) {
+        int cref = arena.allocate(literals, true);
+        arena.setLbd(cref, lbd);
+        lastLearntClause = cref;
+        learntClauseReferences.add(cref);
+        updateLiteralCount(cref, 1);
+        if (proof != null) {
+            writeProof(cref, false);
+        }
+        return cref;
+    }
+
+    /**
+     * Write clauses added to and deleted from the CNF to a proof from now on. Copies of the database do not write to
+     * the proof.
+     * @param proof proof output
+     */
+    public void setProofOutput(ProofOutput proof) {
+        this.proof = proof;
+        proofVariables = new int[variableNames.size()];
+        proofClause = new int[16];
+        lastProofVariable = 0;
+        for (int v = 0; v < variableNames.size(); ++v) {
+            if (!isAuxiliary(v)) {
+                lastProofVariable = Math.max(lastProofVariable, Integer.parseInt(variableNames.get(v)));
             }
-            int lCount = literalCountMap.get(lName);
-            literalCountMap.replace(lName, ++lCount);
+        }
+    }
+
+    /**
+     * Write a clause to the proof without storing it, for a step that justifies a later clause.
+     * @param literals literals of the clause
+     * @param deleted whether the clause is deleted from the proof instead of added
+     */
+    public void writeProofClause(IntList literals, boolean deleted) {
+        if (proof == null) {
+            return;
+        }
+        reserveProofClause(literals.size());
+        for (int i = 0; i < literals.size(); ++i) {
+            proofClause[i] = toProofLiteral(literals.get(i));
+        }
+        writeProofClause(literals.size(), deleted);
+    }
+
+    private void writeProof(int cref, boolean deleted) {
+        int size = arena.size(cref);
+        reserveProofClause(size);
+        for (int i = 0; i < size; ++i) {
+            proofClause[i] = toProofLiteral(arena.literal(cref, i));
+        }
+        writeProofClause(size, deleted);
+    }
+
+    private void reserveProofClause(int size) {
+        if (proofClause.length < size) {
+            proofClause = new int[Math.max(size, 2 * proofClause.length)];
+        }
+    }
+
+    private void writeProofClause(int size, boolean deleted) {
+        if (deleted) {
+            proof.delete(proofClause, size);
+        } else {
+            proof.add(proofClause, size);
+        }
+    }
+
+    /**
+     * Get the DIMACS literal of an integer encoded literal in the proof.
+     * @param literal integer encoded literal
+     * @return literal in DIMACS notation
+     */
+    private int toProofLiteral(int literal) {
+        int variable = LiteralUtil.getVariable(literal);
+        if (variable >= proofVariables.length) {
+            proofVariables = Arrays.copyOf(proofVariables, Math.max(variable + 1, 2 * proofVariables.length));
+        }
+        if (proofVariables[variable] == 0) {
+            proofVariables[variable] = isAuxiliary(variable)
+                    ? ++lastProofVariable : Integer.parseInt(variableNames.get(variable));
+        }
+        return LiteralUtil.isPositive(literal) ? proofVariables[variable] : -proofVariables[variable];
+    }
+
+    private void updateLiteralCount(int cref, int amount) {
+        int size = arena.size(cref);
+        for (int i = 0; i < size; ++i) {
+            int variable = LiteralUtil.getVariable(arena.literal(cref, i));
+            literalCounts.set(variable, literalCounts.get(variable) + amount);
 
             if (size != 2) {
                 continue;
             }
+            twoClauseLiteralCounts.set(variable, twoClauseLiteralCounts.get(variable) + amount);
+        }
+    }
 
-            if (!twoClauseLiteralCountMap.containsKey(lName)) {
-                twoClauseLiteralCountMap.put(lName, 0);
-            }
-            lCount = twoClauseLiteralCountMap.get(lName);
-            twoClauseLiteralCountMap.replace(lName, ++lCount);
+    /**
+     * Get the integer encoded literal of a literal, assigning a new variable index to unseen variable names.
+     * @param literal literal
+     * @return integer encoded literal
+     */
+    public int toLiteral(Literal literal) {
+        Integer variable = variableIndices.get(literal.getName());
+        if (variable == null) {
+            variable = variableNames.size();
+            variableIndices.put(literal.getName(), variable);
+            variableNames.add(literal.getName());
+            literalCounts.add(0);
+            twoClauseLiteralCounts.add(0);
+            eliminated.add(0);
+            auxiliary.add(0);
         }
+        return LiteralUtil.toLiteral(variable, literal.isPositive());
     }
 
-    public Map<String, Integer> getLiteralCountMap() {
-        return literalCountMap;
+    /**
+     * Add a variable that does not occur in the CNF, such as one introduced by preprocessing to encode clauses more
+     * compactly. It has no name in the CNF, so it cannot be looked up by name and is left out of the model.
+     * @return the new variable
+     */
+    public int addAuxiliaryVariable() {
+        int variable = variableNames.size();
+        variableNames.add(AUXILIARY_PREFIX + variable);
+        literalCounts.add(0);
+        twoClauseLiteralCounts.add(0);
+        eliminated.add(0);
+        auxiliary.add(1);
+        ++auxiliaryCount;
+        return variable;
+    }
+
+    public boolean isAuxiliary(int variable) {
+        return auxiliary.get(variable) != 0;
+    }
+
+    public boolean hasAuxiliaryVariables() {
+        return auxiliaryCount > 0;
+    }
+
+    /**
+     * Get the literal of an integer encoded literal.
+     * @param literal integer encoded literal
+     * @return literal
+     */
+    public Literal toLiteral(int literal) {
+        return new Literal(getVariableName(LiteralUtil.getVariable(literal)), LiteralUtil.isPositive(literal));
+    }
+
+    public String getVariableName(int variable) {
+        return variableNames.get(variable);
+    }
+
+    public List<String> getVariableNames() {
+        return variableNames;
+    }
+
+    /**
+     * Get a clause view of a clause in the arena.
+     * @param cref clause reference
+     * @return clause
+     */
+    public Clause getClause(int cref) {
+        Clause clause = new Clause();
+        for (int i = 0; i < arena.size(cref); ++i) {
+            clause.addLiteral(toLiteral(arena.literal(cref, i)));
+        }
+        return clause;
+    }
+
+    /**
+     * Get number of clauses each variable appears in, indexed by variable.
+     * @return literal counts
+     */
+    public IntList getLiteralCounts() {
+        return literalCounts;
+    }
+
+    /**
+     * Get number of clauses with two literals each variable appears in, indexed by variable.
+     * @return literal counts in two clauses
+     */
+    public IntList getTwoClauseLiteralCounts() {
+        return twoClauseLiteralCounts;
     }
 
-    public Map<String, Integer> getTwoClauseLiteralCountMap() {
-        return twoClauseLiteralCountMap;
+    /**
+     * Mark a variable as eliminated. The caller removes its clauses and pushes them to the reconstruction stack.
+     * @param variable variable
+     */
+    public void eliminateVariable(int variable) {
+        eliminated.set(variable, 1);
+    }
+
+    public boolean isEliminated(int variable) {
+        return eliminated.get(variable) != 0;
+    }
+
+    public ReconstructionStack getReconstructionStack() {
+        return reconstructionStack;
     }
 
     public Clause getLastLearntClause() {
+        if (lastLearntClause == ClauseArena.NO_CLAUSE) {
+            return null;
+        }
+        return getClause(lastLearntClause);
+    }
+
+    public int getLastLearntClauseReference() {
         return lastLearntClause;
     }
 
     public void clearLastLearntClause() {
-        lastLearntClause = null;
+        lastLearntClause = ClauseArena.NO_CLAUSE;
     }
 
+    /**
+     * Get clause views of the clauses in the CNF, excluding learnt clauses.
+     * @return clauses
+     */
     public Set<Clause> getAllClauses() {
+        Set<Clause> clauses = new HashSet<>();
+        for (int i = 0; i < clauseReferences.size(); ++i) {
+            clauses.add(getClause(clauseReferences.get(i)));
+        }
         return clauses;
     }
 
-    public int getNumberOfClauses() {
-        return clauses.size();
+    public ClauseArena getArena() {
+        return arena;
     }
 
-    public int getNumberOfLiterals() {
-        return literals.size();
+    /**
+     * Get references of the clauses in the CNF, excluding learnt clauses.
+     * @return clause references
+     */
+    public IntList getClauseReferences() {
+        return clauseReferences;
+    }
+
+    public IntList getLearntClauseReferences() {
+        return learntClauseReferences;
     }
 
-    public Set<String> getAllLiterals() {
-        return literals;
+    /**
+     * Get number of bytes used by the clauses in the arena, including learnt clauses.
+     * @return number of bytes used
+     */
+    public long getUsedBytes() {
+        return arena.getUsedBytes();
+    }
+
+    public int getNumberOfClauses() {
+        return numberOfClauses;
+    }
+
+    public int getNumberOfLiterals() {
+        return variableNames.size();
     }
 
     public void reset() {
-        clauses.clear();
-        literals.clear();
-        learntClauses.clear();
-        lastLearntClause = null;
+        numberOfClauses = 0;
+        arena.clear();
+        clauseReferences.clear();
+        learntClauseReferences.clear();
+        lastLearntClause = ClauseArena.NO_CLAUSE;
+        variableIndices.clear();
+        variableNames.clear();
+        twoClauseLiteralCounts.clear();
+        literalCounts.clear();
+        eliminated.clear();
+        reconstructionStack.clear();
+        auxiliary.clear();
+        auxiliaryCount = 0;
     }
 
     public void clearLearntClauses() {
-        learntClauses.forEach(c -> clauses.remove(c));
-        learntClauses.clear();
-        lastLearntClause = null;
+        for (int i = 0; i < learntClauseReferences.size(); ++i) {
+            arena.delete(learntClauseReferences.get(i));
+        }
+        removeDeletedClauses();
+    }
+
+    /**
+     * Reclaim the memory of clauses marked as deleted in the arena. All clause references move, so references held
+     * outside the database must be updated with {@code ClauseArena.relocate}.
+     */
+    public void removeDeletedClauses() {
+        releaseDeletedClauses(clauseReferences);
+        releaseDeletedClauses(learntClauseReferences);
+        arena.compact();
+        relocateReferences(clauseReferences);
+        relocateReferences(learntClauseReferences);
+        if (lastLearntClause != ClauseArena.NO_CLAUSE) {
+            lastLearntClause = arena.relocate(lastLearntClause);
+        }
+    }
+
+    /**
+     * Subtract the literal counts of deleted clauses and write their deletion to the proof.
+     * @param references clause references
+     */
+    private void releaseDeletedClauses(IntList references) {
+        for (int i = 0; i < references.size(); ++i) {
+            int cref = references.get(i);
+            if (arena.isDeleted(cref)) {
+                updateLiteralCount(cref, -1);
+                if (proof != null) {
+                    writeProof(cref, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Update references after compaction, dropping the references of deleted clauses.
+     * @param references clause references
+     */
+    private void relocateReferences(IntList references) {
+        int j = 0;
+        for (int i = 0; i < references.size(); ++i) {
+            int cref = arena.relocate(references.get(i));
+            if (cref != ClauseArena.NO_CLAUSE) {
+                references.set(j++, cref);
+            }
+        }
+        references.shrink(j);
     }
 }
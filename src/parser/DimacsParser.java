@@ -1,137 +1,291 @@
 package parser;
 
-import datastruct.Clause;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import config.Config;
+import datastruct.IntList;
 import datastruct.Literal;
 import db.ClauseDB;
+import util.LiteralUtil;
 
 /**
- * A DIMACS parser that parses to CNF object based on the content of the String.
+ * A DIMACS parser that reads a CNF file into a clause database. The file is memory mapped and tokenized byte by
+ * byte, with integers parsed by hand, so no strings are made for the clauses. Literals go straight into the integer
+ * encoded clauses of the database, and only a variable seen for the first time is looked up by name.
+ * <p>
+ * A large file is split into chunks at clause boundaries, which worker threads tokenize into buffers of their own.
+ * The buffers are added to the database in the order of the chunks, so the database is the same as when the file is
+ * read on one thread.
  */
 public class DimacsParser {
 
-    private static final String COMMENT_TOKEN = "c";
-    private static final String PROBLEM_TOKEN = "p";
+    /**
+     * Number of bytes of the file mapped at a time.
+     */
+    private static final long MAP_WINDOW = 1L << 30;
+
+    /**
+     * Number of bytes tokenized on one thread before the clauses read are added to the database.
+     */
+    private static final int MERGE_INTERVAL = 1 << 20;
+
+    /**
+     * Fewest bytes in a chunk of a file parsed in parallel, and number of chunks per thread.
+     */
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
 
     private ClauseDB db;
 
-    private boolean hasAttribute = false;
+    private boolean hasError;
+
+    /**
+     * Whether the end marker of the CNF was read, after which chunks are ignored.
+     */
+    private boolean hasEnded;
 
+    private int problemLineCount;
     private int numberOfClauses;
     private int numberOfLiterals;
 
+    private IntList clause;
+
+    /**
+     * Number of the clause each literal was last added to, indexed by literal, so that a literal repeated in a clause
+     * is only added once.
+     */
+    private int[] literalStamps;
+    private int clauseStamp;
+
     /**
-     * To keep track of how many variables are there. This does not store if the variable is positive or
-     * negative.
+     * Variable of each variable of the CNF plus 1, indexed by its number in the CNF, or 0 if not seen yet.
      */
+    private int[] variables;
 
     public DimacsParser(ClauseDB db) {
         numberOfClauses = 0;
         numberOfLiterals = 0;
         this.db = db;
+        clause = new IntList();
+        literalStamps = new int[32];
+        clauseStamp = 1;
+        variables = new int[16];
     }
 
-    public boolean parse(String dimacsString) {
-        String[] subStrings = dimacsString.trim().split("\\n");
-        // If there is nothing, just return
-        if (subStrings.length == 0) {
+    /**
+     * Parse a CNF file, on as many threads as {@code Config.parseThreads} allows for its size.
+     * @param path path of the file
+     * @return true if the file is in the correct format and matches its problem line, false otherwise
+     */
+    public boolean parse(String path) {
+        int threads = Config.parseThreads > 0 ? Config.parseThreads : Runtime.getRuntime().availableProcessors();
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunkCount = (int) Math.min(threads * CHUNKS_PER_THREAD, size / MIN_CHUNK_SIZE);
+            if (threads > 1 && chunkCount > 1) {
+                parseChunks(channel, size, chunkCount, threads);
+            } else {
+                DimacsTokenizer tokenizer = new DimacsTokenizer();
+                tokenize(channel, 0, size, tokenizer, true);
+                merge(tokenizer);
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
             return false;
         }
+        return isValid();
+    }
 
-        for (String s : subStrings) {
-            if (isCommentLine(s)) {
-                continue;
-            }
-            if (isProblemLine(s)) {
-                if (!hasAttribute) {
-                    boolean parseResult = parseProblemLine(s);
-                    if (!parseResult) {
-                        return false;
-                    }
-                    hasAttribute = true;
-                    continue;
-                } else {
-                    return false;
-                }
-            }
-            // Tricky: to catch certain cases where the clause is marked end by 0 but does not go to new line
-            String[] clauseStrings = s.trim().split("[ ][0]");
+    /**
+     * Parse a CNF held in a buffer, from its position to its limit.
+     * @param content bytes of the CNF
+     * @return true if the CNF is in the correct format and matches its problem line, false otherwise
+     */
+    public boolean parse(ByteBuffer content) {
+        DimacsTokenizer tokenizer = new DimacsTokenizer();
+        tokenizer.consume(content);
+        tokenizer.finish();
+        merge(tokenizer);
+        return isValid();
+    }
 
-            if (clauseStrings.length == 1 && clauseStrings[0].equals("0")) {
-                continue;
-            }
+    private boolean isValid() {
+        return !hasError && problemLineCount <= 1 && db.getNumberOfClauses() == numberOfClauses
+                && db.getNumberOfLiterals() == numberOfLiterals;
+    }
 
-            for (String clauseString : clauseStrings) {
-                Clause clause = parseClause(clauseString);
-                db.insertClause(clause);
-            }
+    /**
+     * Split the file into chunks that start at clause boundaries and tokenize them on a pool of threads, adding the
+     * clauses of each chunk to the database in order while later chunks are still tokenized.
+     */
+    private void parseChunks(FileChannel channel, long size, int chunkCount, int threads) throws IOException {
+        long[] starts = new long[chunkCount + 1];
+        for (int i = 1; i < chunkCount; ++i) {
+            starts[i] = Math.max(starts[i - 1], findClauseBoundary(channel, size * i / chunkCount, size));
         }
+        starts[chunkCount] = size;
 
-        for (Clause c : db.getAllClauses()) {
-            for (Literal l : c.getLiterals()) {
-                System.out.print(String.format("%s%s ", l.isPositive() ? "" : "-", l.getName()));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Future<DimacsTokenizer>> chunks = new ArrayList<>();
+            for (int i = 0; i < chunkCount; ++i) {
+                long start = starts[i];
+                long end = starts[i + 1];
+                chunks.add(pool.submit(() -> {
+                    DimacsTokenizer tokenizer = new DimacsTokenizer();
+                    tokenize(channel, start, end, tokenizer, false);
+                    return tokenizer;
+                }));
             }
-            System.out.println();
+            for (int i = 0; i < chunkCount && !hasError && !hasEnded; ++i) {
+                merge(chunks.get(i).get());
+                // Drop the buffer of the chunk once its clauses are in the database
+                chunks.set(i, null);
+            }
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            pool.shutdownNow();
         }
-
-        return db.getNumberOfClauses() == numberOfClauses && db.getNumberOfLiterals() == numberOfLiterals;
     }
 
     /**
-     * Parse the problem line of DIMACS.
-     * @param line problem line of DIMACS file.
+     * Tokenize the bytes of the file in a range, which starts at a clause boundary.
+     * @param merging whether to add the clauses to the database as they are read, so that the whole file is not held
+     *                in the buffer of the tokenizer, which only the thread that owns the database can do
      */
-    private boolean parseProblemLine(String line) {
-        String[] subStrings = line.trim().split("[\\s]+");
-
-        // If the number of substrings is not 4, the format is invalid.
-        if (subStrings.length != 4) {
-            return false;
+    private void tokenize(FileChannel channel, long start, long end, DimacsTokenizer tokenizer, boolean merging)
+            throws IOException {
+        for (long position = start; position < end && !tokenizer.hasError(); position += MAP_WINDOW) {
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAP_WINDOW, end - position));
+            if (!merging) {
+                tokenizer.consume(window);
+                continue;
+            }
+            for (int offset = 0; offset < window.limit() && !tokenizer.hasError(); offset += MERGE_INTERVAL) {
+                ByteBuffer piece = window.duplicate();
+                piece.limit(Math.min(window.limit(), offset + MERGE_INTERVAL));
+                piece.position(offset);
+                tokenizer.consume(piece);
+                insertClauses(tokenizer);
+            }
         }
+        tokenizer.finish();
+    }
 
-        // Third and fourth indicates number of literals and number of clauses.
-        try {
-            numberOfLiterals = Integer.parseInt(subStrings[2]);
-            numberOfClauses = Integer.parseInt(subStrings[3]);
-            return true;
-        } catch (NumberFormatException nfe) {
-            nfe.printStackTrace();
-            return false;
+    /**
+     * Add the clauses read by a tokenizer to the database and take its problem line.
+     */
+    private void merge(DimacsTokenizer tokenizer) {
+        insertClauses(tokenizer);
+        hasError |= tokenizer.hasError();
+        hasEnded |= tokenizer.hasEnded();
+        if (tokenizer.getProblemLineCount() > 0) {
+            problemLineCount += tokenizer.getProblemLineCount();
+            numberOfLiterals = tokenizer.getNumberOfLiterals();
+            numberOfClauses = tokenizer.getNumberOfClauses();
         }
     }
 
-    private static Clause parseClause(String line) {
-        // Trim whitespaces in front and back
-        line = line.trim();
-        // Split by spaces to get each literal
-        String[] literalStrings = line.split("[\\s]+");
-        if (literalStrings.length == 0) {
-            return null;
-        }
-        Clause clause = new Clause();
-        for (String literalString : literalStrings) {
-            literalString = literalString.trim();
-            Literal literal = parseLiteral(literalString);
-            clause.addLiteral(literal);
+    /**
+     * Add the complete clauses read by a tokenizer to the database, and remove them from the tokenizer.
+     */
+    private void insertClauses(DimacsTokenizer tokenizer) {
+        IntList literals = tokenizer.getLiterals();
+        int end = tokenizer.getClausesEnd();
+        for (int i = 0; i < end; ++i) {
+            int literal = literals.get(i);
+            if (literal == 0) {
+                db.insertCnfClause(clause);
+                clause.clear();
+                ++clauseStamp;
+            } else {
+                addLiteral(toLiteral(Math.abs(literal), literal > 0));
+            }
         }
-        return clause;
+        tokenizer.clearClauses();
     }
 
-    private static Literal parseLiteral(String string) {
-        try {
-            // Ensure that it is a valid format
-            int valid = Integer.parseInt(string);
-            return new Literal(String.valueOf(Math.abs(valid)), valid >= 0);
-        } catch (NumberFormatException nfe) {
-            nfe.printStackTrace();
-            return null;
+    private void addLiteral(int literal) {
+        if (literal >= literalStamps.length) {
+            int[] grown = new int[Math.max(2 * literalStamps.length, literal + 1)];
+            System.arraycopy(literalStamps, 0, grown, 0, literalStamps.length);
+            literalStamps = grown;
+        }
+        if (literalStamps[literal] != clauseStamp) {
+            literalStamps[literal] = clauseStamp;
+            clause.add(literal);
         }
     }
 
-    private boolean isCommentLine(String line) {
-        return line.startsWith(COMMENT_TOKEN);
+    /**
+     * Get the integer encoded literal of a variable of the CNF, adding the variable to the database the first time
+     * it is seen.
+     */
+    private int toLiteral(int number, boolean positive) {
+        if (number >= variables.length) {
+            int[] grown = new int[Math.max(2 * variables.length, number + 1)];
+            System.arraycopy(variables, 0, grown, 0, variables.length);
+            variables = grown;
+        }
+        if (variables[number] == 0) {
+            variables[number] = LiteralUtil.getVariable(db.toLiteral(new Literal(String.valueOf(number), true))) + 1;
+        }
+        return LiteralUtil.toLiteral(variables[number] - 1, positive);
     }
 
-    private boolean isProblemLine(String line) {
-        return line.startsWith(PROBLEM_TOKEN);
+    /**
+     * Find the first clause boundary after a position of the file. The boundary is after a 0 token that ends a
+     * clause, looked for from the start of the next line, since a 0 in a comment or the problem line does not end a
+     * clause.
+     * @return position after the 0, or the size of the file if there is none
+     */
+    private static long findClauseBoundary(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        boolean lineStart = false;
+        boolean skipLine = true;
+        boolean afterWhitespace = false;
+        boolean afterZero = false;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; ++i, ++position) {
+                byte b = buffer.get(i);
+                boolean whitespace = DimacsTokenizer.isWhitespace(b);
+                if (afterZero && whitespace) {
+                    return position;
+                }
+                afterZero = false;
+                if (lineStart) {
+                    // Comments, the problem line and the end marker only start at the start of a line
+                    skipLine = b == 'c' || b == 'p' || b == '%';
+                    afterWhitespace = true;
+                }
+                lineStart = b == '\n';
+                if (!skipLine) {
+                    afterZero = b == '0' && afterWhitespace;
+                    afterWhitespace = whitespace;
+                } else if (lineStart) {
+                    skipLine = false;
+                }
+            }
+        }
+        return size;
     }
 }
@@ -0,0 +1,252 @@
+package parser;
+
+import java.nio.ByteBuffer;
+
+import datastruct.IntList;
+
+/**
+ * Tokenizer of the bytes of a DIMACS CNF into a buffer of clauses. Integers are parsed by hand, and the literals of
+ * the clauses are kept in DIMACS notation, each clause ended by 0, for a parser to add to the database.
+ * <p>
+ * The tokenizer keeps its state between bytes, so the bytes can be given in pieces with tokens running across them.
+ * A tokenizer that starts in the middle of a CNF must start at a clause boundary.
+ */
+class DimacsTokenizer {
+    private static final int LINE_START = 0;
+    private static final int CLAUSE = 1;
+    private static final int COMMENT = 2;
+    private static final int PROBLEM = 3;
+    private static final int END = 4;
+    private static final int ERROR = 5;
+
+    private int state;
+
+    /**
+     * Number being read, whether it is negative and whether any digit of it was read.
+     */
+    private int value;
+    private boolean negative;
+    private boolean inNumber;
+
+    /**
+     * Number of problem lines read, and number of words of the current one read so far.
+     */
+    private int problemLineCount;
+    private int problemWords;
+
+    private int numberOfClauses;
+    private int numberOfLiterals;
+
+    /**
+     * Literals of the clauses read, each clause ended by 0, and the index of the first literal of the clause being
+     * read.
+     */
+    private IntList literals;
+    private int clauseStart;
+
+    DimacsTokenizer() {
+        state = LINE_START;
+        literals = new IntList();
+        clauseStart = 0;
+    }
+
+    /**
+     * Read bytes of the CNF from the position to the limit of a buffer.
+     * @param content bytes of the CNF
+     */
+    void consume(ByteBuffer content) {
+        int limit = content.limit();
+        for (int i = content.position(); i < limit && state != ERROR; ++i) {
+            byte b = content.get(i);
+            switch (state) {
+                case LINE_START:
+                    startLine(b);
+                    break;
+                case CLAUSE:
+                    readClause(b);
+                    break;
+                case COMMENT:
+                    if (b == '\n') {
+                        state = LINE_START;
+                    }
+                    break;
+                case PROBLEM:
+                    readProblemLine(b);
+                    break;
+                default:
+                    // Anything after the end marker is ignored
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Finish the last line. A clause at the end of the CNF may leave out its terminating 0.
+     */
+    void finish() {
+        if (state == CLAUSE) {
+            readClause((byte) '\n');
+        } else if (state == PROBLEM) {
+            readProblemLine((byte) '\n');
+        }
+        if (state != ERROR && literals.size() > clauseStart) {
+            endClause();
+        }
+    }
+
+    boolean hasError() {
+        return state == ERROR;
+    }
+
+    /**
+     * Check if the end marker of the CNF was read, after which the bytes are ignored.
+     * @return true if the end marker was read, false otherwise
+     */
+    boolean hasEnded() {
+        return state == END;
+    }
+
+    int getProblemLineCount() {
+        return problemLineCount;
+    }
+
+    int getNumberOfClauses() {
+        return numberOfClauses;
+    }
+
+    int getNumberOfLiterals() {
+        return numberOfLiterals;
+    }
+
+    /**
+     * Get the literals of the clauses read, each clause ended by 0. A clause still being read follows the last 0.
+     * @return literals in DIMACS notation
+     */
+    IntList getLiterals() {
+        return literals;
+    }
+
+    /**
+     * Get the end of the complete clauses in the literals.
+     * @return index after the 0 of the last complete clause
+     */
+    int getClausesEnd() {
+        return clauseStart;
+    }
+
+    /**
+     * Remove the complete clauses from the literals, keeping a clause still being read.
+     */
+    void clearClauses() {
+        int pending = literals.size() - clauseStart;
+        for (int i = 0; i < pending; ++i) {
+            literals.set(i, literals.get(clauseStart + i));
+        }
+        literals.shrink(pending);
+        clauseStart = 0;
+    }
+
+    private void startLine(byte b) {
+        if (b == 'c') {
+            state = COMMENT;
+        } else if (b == 'p') {
+            if (++problemLineCount > 1) {
+                state = ERROR;
+                return;
+            }
+            problemWords = 1;
+            inNumber = false;
+            state = PROBLEM;
+        } else if (b == '%') {
+            // Some benchmark sets mark the end of the clauses with a line starting with %
+            state = END;
+        } else {
+            state = CLAUSE;
+            readClause(b);
+        }
+    }
+
+    private void readClause(byte b) {
+        if (b >= '0' && b <= '9') {
+            readDigit(b);
+        } else if (b == '-' && !inNumber && !negative) {
+            negative = true;
+        } else if (isWhitespace(b)) {
+            if (inNumber) {
+                endLiteral();
+            } else if (negative) {
+                state = ERROR;
+                return;
+            }
+            if (b == '\n') {
+                state = LINE_START;
+            }
+        } else {
+            state = ERROR;
+        }
+    }
+
+    private void endLiteral() {
+        if (value != 0) {
+            literals.add(negative ? -value : value);
+        } else if (literals.size() > clauseStart) {
+            endClause();
+        }
+        // A lone 0 ends an empty line of the CNF rather than a clause
+        value = 0;
+        negative = false;
+        inNumber = false;
+    }
+
+    private void endClause() {
+        literals.add(0);
+        clauseStart = literals.size();
+    }
+
+    /**
+     * Read the problem line, {@code p cnf <number of literals> <number of clauses>}.
+     */
+    private void readProblemLine(byte b) {
+        if (isWhitespace(b)) {
+            if (inNumber) {
+                if (problemWords == 3) {
+                    numberOfLiterals = value;
+                } else if (problemWords == 4) {
+                    numberOfClauses = value;
+                }
+                value = 0;
+                inNumber = false;
+            }
+            if (b == '\n') {
+                state = problemWords == 4 ? LINE_START : ERROR;
+            }
+            return;
+        }
+        if (!inNumber) {
+            ++problemWords;
+            inNumber = true;
+        }
+        // Third and fourth word indicate number of literals and number of clauses.
+        if (problemWords > 4 || (problemWords > 2 && !readDigit(b))) {
+            state = ERROR;
+        }
+    }
+
+    /**
+     * Add a digit to the number being read.
+     * @return true if the number still fits an int, false otherwise
+     */
+    private boolean readDigit(byte b) {
+        if (b < '0' || b > '9' || value > (Integer.MAX_VALUE - (b - '0')) / 10) {
+            state = ERROR;
+            return false;
+        }
+        value = 10 * value + (b - '0');
+        inNumber = true;
+        return true;
+    }
+
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+}
@@ -0,0 +1,247 @@
+package parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import checker.DratChecker;
+
+/**
+ * A DRAT parser that passes the lemmas and deletions of a proof to a checker. Both the text format and the binary
+ * format of drat-trim are read, told apart by the first bytes of the proof.
+ * <p>
+ * The parser keeps its state between bytes, so a proof file is memory mapped and read window by window, with clauses
+ * running across the windows, and is never held in memory as a whole.
+ */
+public class DratParser {
+
+    /**
+     * Number of bytes of the file mapped at a time.
+     */
+    private static final long MAP_WINDOW = 1L << 30;
+
+    /**
+     * Number of bytes looked at to tell a binary proof from a text proof.
+     */
+    private static final int DETECTION_LENGTH = 10;
+
+    private static final int CLAUSE_START = 0;
+    private static final int COMMENT = 1;
+    private static final int LITERALS = 2;
+    private static final int ERROR = 3;
+
+    private DratChecker checker;
+    private int[] clause;
+    private int size;
+
+    private boolean detected;
+    private boolean binary;
+    private int state;
+    private boolean deletion;
+
+    /**
+     * Number being read, and whether it is negative and whether any digit of it was read in a text proof, or the
+     * number of bits of it read in a binary proof.
+     */
+    private int value;
+    private boolean negative;
+    private boolean inNumber;
+    private int shift;
+
+    public DratParser(DratChecker checker) {
+        this.checker = checker;
+        clause = new int[16];
+        state = CLAUSE_START;
+    }
+
+    /**
+     * Parse a proof file.
+     * @param path path of the proof
+     * @return true if the proof is well formed, false otherwise
+     */
+    public boolean parse(String path) {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size && state != ERROR; position += MAP_WINDOW) {
+                consume(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position)));
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return false;
+        }
+        return finish();
+    }
+
+    /**
+     * Read bytes of the proof from the position to the limit of a buffer. The format is told from the first bytes
+     * given.
+     * @param content bytes of the proof
+     */
+    public void consume(ByteBuffer content) {
+        int limit = content.limit();
+        if (!detected && content.position() < limit) {
+            binary = isBinary(content);
+            detected = true;
+        }
+        for (int i = content.position(); i < limit && state != ERROR; ++i) {
+            if (binary) {
+                readBinary(content.get(i));
+            } else {
+                readText(content.get(i));
+            }
+        }
+    }
+
+    /**
+     * Finish the proof after its last bytes.
+     * @return true if the proof is well formed and does not end inside a clause, false otherwise
+     */
+    public boolean finish() {
+        if (!binary && inNumber) {
+            endNumber();
+        }
+        return state == CLAUSE_START || state == COMMENT;
+    }
+
+    private void readText(byte b) {
+        switch (state) {
+            case CLAUSE_START:
+                if (isWhitespace(b)) {
+                    return;
+                }
+                if (b == 'c') {
+                    state = COMMENT;
+                    return;
+                }
+                startClause(b == 'd');
+                if (deletion) {
+                    return;
+                }
+                readLiteral(b);
+                return;
+            case COMMENT:
+                if (b == '\n') {
+                    state = CLAUSE_START;
+                }
+                return;
+            default:
+                readLiteral(b);
+        }
+    }
+
+    private void readLiteral(byte b) {
+        boolean digit = b >= '0' && b <= '9';
+        if (inNumber && !digit) {
+            endNumber();
+            if (state != LITERALS) {
+                readText(b);
+                return;
+            }
+        }
+        if (digit) {
+            if (value > (Integer.MAX_VALUE - (b - '0')) / 10) {
+                state = ERROR;
+                return;
+            }
+            value = 10 * value + (b - '0');
+            inNumber = true;
+        } else if (negative) {
+            state = ERROR;
+        } else if (b == '-') {
+            negative = true;
+        } else if (!isWhitespace(b)) {
+            state = ERROR;
+        }
+    }
+
+    private void endNumber() {
+        if (value == 0) {
+            finishClause();
+        } else {
+            add(negative ? -value : value);
+        }
+        value = 0;
+        negative = false;
+        inNumber = false;
+    }
+
+    private void readBinary(byte b) {
+        if (state == CLAUSE_START) {
+            if (b != 'a' && b != 'd') {
+                state = ERROR;
+                return;
+            }
+            startClause(b == 'd');
+            return;
+        }
+        // Variable-length unsigned number of 2 * variable plus 1 if negative, 7 bits per byte from the lowest
+        if (shift > 28) {
+            state = ERROR;
+            return;
+        }
+        value |= (b & 0x7F) << shift;
+        shift += 7;
+        if ((b & 0x80) != 0) {
+            return;
+        }
+        if (value == 0) {
+            finishClause();
+        } else {
+            add((value & 1) == 0 ? value >>> 1 : -(value >>> 1));
+        }
+        value = 0;
+        shift = 0;
+    }
+
+    private void startClause(boolean deletion) {
+        this.deletion = deletion;
+        size = 0;
+        state = LITERALS;
+    }
+
+    private void add(int literal) {
+        if (size == clause.length) {
+            int[] grown = new int[2 * clause.length];
+            System.arraycopy(clause, 0, grown, 0, size);
+            clause = grown;
+        }
+        clause[size++] = literal;
+    }
+
+    private void finishClause() {
+        if (deletion) {
+            checker.deleteClause(clause, size);
+        } else {
+            checker.addLemma(clause, size);
+        }
+        state = CLAUSE_START;
+    }
+
+    /**
+     * Tell a binary proof from a text proof. Text proofs start with a comment or only have digits, signs, deletion
+     * markers and whitespace in their first bytes, while the encoded literals of binary proofs are rarely printable.
+     * @param content first bytes of the proof, from the position of the buffer
+     * @return true if the proof is binary, false otherwise
+     */
+    private static boolean isBinary(ByteBuffer content) {
+        int start = content.position();
+        int end = Math.min(content.limit(), start + DETECTION_LENGTH);
+        if (content.get(start) == 'c') {
+            return false;
+        }
+        for (int i = start; i < end; ++i) {
+            byte b = content.get(i);
+            boolean text = isWhitespace(b) || (b >= '0' && b <= '9') || b == '-' || b == 'd' || b == 'c';
+            if (!text) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
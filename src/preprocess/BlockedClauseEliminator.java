@@ -0,0 +1,147 @@
+package preprocess;
+
+import datastruct.ClauseArena;
+import datastruct.IntList;
+import datastruct.ReconstructionStack;
+import db.ClauseDB;
+import util.LiteralUtil;
+
+/**
+ * Blocked clause elimination. A clause C is blocked on one of its literals l if every resolvent of C on l with a
+ * clause containing -l is a tautology. Removing a blocked clause keeps the CNF satisfiable, and a model is repaired by
+ * making l true whenever it falsifies C, so blocked clauses are pushed to the reconstruction stack with l as pivot.
+ * <p>
+ * Literals are checked from a queue. Removing a clause can only block clauses containing the negation of one of its
+ * literals, so those literals are queued again.
+ */
+public class BlockedClauseEliminator {
+
+    /**
+     * Most clauses containing the negated literal to check a literal against.
+     */
+    private static final int OCCURRENCE_LIMIT = 200;
+
+    private ClauseDB db;
+    private ClauseArena arena;
+    private ReconstructionStack reconstructionStack;
+
+    /**
+     * References of the clauses each literal occurs in, indexed by literal. Deleted clauses are removed lazily.
+     */
+    private IntList[] occurrences;
+
+    private IntList queue;
+    private boolean[] queued;
+    private boolean[] marks;
+
+    public BlockedClauseEliminator(ClauseDB db) {
+        this.db = db;
+        arena = db.getArena();
+        reconstructionStack = db.getReconstructionStack();
+        int numberOfLiterals = 2 * db.getNumberOfLiterals();
+        occurrences = new IntList[numberOfLiterals];
+        for (int i = 0; i < numberOfLiterals; ++i) {
+            occurrences[i] = new IntList(4);
+        }
+        queue = new IntList();
+        queued = new boolean[numberOfLiterals];
+        marks = new boolean[numberOfLiterals];
+    }
+
+    /**
+     * Remove blocked clauses from the database.
+     * @return number of clauses removed
+     */
+    public int eliminate() {
+        IntList clauses = db.getClauseReferences();
+        for (int i = 0; i < clauses.size(); ++i) {
+            int cref = clauses.get(i);
+            for (int k = 0; k < arena.size(cref); ++k) {
+                occurrences[arena.literal(cref, k)].add(cref);
+            }
+        }
+        for (int l = 0; l < occurrences.length; ++l) {
+            enqueue(l);
+        }
+
+        int removed = 0;
+        while (!queue.isEmpty()) {
+            int literal = queue.removeLast();
+            queued[literal] = false;
+            removed += eliminateOn(literal);
+        }
+
+        db.removeDeletedClauses();
+        return removed;
+    }
+
+    /**
+     * Remove the clauses blocked on a literal.
+     * @param literal literal
+     * @return number of clauses removed
+     */
+    private int eliminateOn(int literal) {
+        IntList candidates = OccurrenceUtil.compact(arena, occurrences[literal]);
+        IntList resolved = OccurrenceUtil.compact(arena, occurrences[LiteralUtil.negate(literal)]);
+        if (candidates.isEmpty() || resolved.size() > OCCURRENCE_LIMIT) {
+            return 0;
+        }
+
+        int removed = 0;
+        for (int i = 0; i < candidates.size(); ++i) {
+            int cref = candidates.get(i);
+            if (arena.isDeleted(cref) || !isBlocked(cref, literal, resolved)) {
+                continue;
+            }
+            reconstructionStack.push(literal, arena, cref);
+            arena.delete(cref);
+            ++removed;
+            for (int k = 0; k < arena.size(cref); ++k) {
+                int other = arena.literal(cref, k);
+                if (other != literal) {
+                    enqueue(LiteralUtil.negate(other));
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Check if every resolvent of a clause on a literal is a tautology.
+     * @param cref clause reference
+     * @param literal literal of the clause
+     * @param resolved references of the clauses containing the negated literal
+     * @return true if the clause is blocked on the literal, false otherwise
+     */
+    private boolean isBlocked(int cref, int literal, IntList resolved) {
+        for (int k = 0; k < arena.size(cref); ++k) {
+            marks[arena.literal(cref, k)] = true;
+        }
+        boolean blocked = true;
+        for (int i = 0; i < resolved.size() && blocked; ++i) {
+            int other = resolved.get(i);
+            if (arena.isDeleted(other)) {
+                continue;
+            }
+            blocked = false;
+            for (int k = 0; k < arena.size(other); ++k) {
+                int negated = LiteralUtil.negate(arena.literal(other, k));
+                if (negated != literal && marks[negated]) {
+                    blocked = true;
+                    break;
+                }
+            }
+        }
+        for (int k = 0; k < arena.size(cref); ++k) {
+            marks[arena.literal(cref, k)] = false;
+        }
+        return blocked;
+    }
+
+    private void enqueue(int literal) {
+        if (!queued[literal]) {
+            queued[literal] = true;
+            queue.add(literal);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package preprocess;
+
+import java.util.Arrays;
+
+import datastruct.ClauseArena;
+import datastruct.IntList;
+import datastruct.VariableHeap;
+import db.ClauseDB;
+import util.LiteralUtil;
+
+/**
+ * Bounded variable addition as in SimpleBVA. If a set of literals L and a set of clauses M are such that the CNF
+ * contains the clause (l | C) for every l in L and C in M, those |L| * |M| clauses can be replaced by the |L| + |M|
+ * clauses (-x | l) and (x | C) with a new variable x, since resolving on x gives back the original clauses. This
+ * turns pairwise at-most-one constraints, which need a quadratic number of binary clauses, into a linear number of
+ * clauses. Every model of the new CNF is a model of the original CNF, so model reconstruction only has to leave out
+ * the new variables.
+ * <p>
+ * Literals are tried in order of their number of occurrences. L starts with the literal and M with the clauses it
+ * occurs in, and L is extended greedily with the literal that matches the most clauses of M as long as the number of
+ * clauses saved increases.
+ */
+public class BoundedVariableAdder {
+
+    /**
+     * Longest clause matched.
+     */
+    private static final int CLAUSE_SIZE_LIMIT = 20;
+
+    /**
+     * Most clauses visited while matching before giving up on further additions.
+     */
+    private static final long STEP_LIMIT = 10_000_000;
+
+    private ClauseDB db;
+    private ClauseArena arena;
+
+    /**
+     * References of the clauses each literal occurs in, indexed by literal, including the literals of added
+     * variables. Deleted clauses are removed lazily.
+     */
+    private IntList[] occurrences;
+
+    /**
+     * Order of the literals of the CNF to try, by number of occurrences. Literals of added variables are not tried.
+     */
+    private double[] priorities;
+    private VariableHeap order;
+
+    /**
+     * Literals L and clauses M of the current replacement, and the clause matching each clause of M for each literal
+     * in L, as the matched literal followed by the index of the clause in M.
+     */
+    private IntList matchedLiterals;
+    private IntList matchedClauses;
+    private IntList matches;
+
+    private int[] matchCounts;
+    private int[] matchStamps;
+    private boolean[] marks;
+    private boolean[] inMatchedLiterals;
+    private IntList clause;
+    private long steps;
+
+    public BoundedVariableAdder(ClauseDB db) {
+        this.db = db;
+        arena = db.getArena();
+        int numberOfLiterals = 2 * db.getNumberOfLiterals();
+        occurrences = new IntList[0];
+        priorities = new double[numberOfLiterals];
+        order = new VariableHeap(priorities);
+        matchedLiterals = new IntList();
+        matchedClauses = new IntList();
+        matches = new IntList();
+        matchCounts = new int[0];
+        matchStamps = new int[0];
+        marks = new boolean[0];
+        inMatchedLiterals = new boolean[0];
+        clause = new IntList();
+        grow(numberOfLiterals);
+    }
+
+    /**
+     * Replace matching clauses with fewer clauses over new variables.
+     * @return number of variables added
+     */
+    public int addVariables() {
+        IntList clauses = db.getClauseReferences();
+        for (int i = 0; i < clauses.size(); ++i) {
+            addOccurrences(clauses.get(i));
+        }
+        for (int l = 0; l < priorities.length; ++l) {
+            order.insert(l);
+        }
+
+        int added = 0;
+        steps = 0;
+        while (!order.isEmpty() && steps < STEP_LIMIT) {
+            int literal = order.removeMax();
+            if (priorities[literal] < 2) {
+                break;
+            }
+            if (tryReplace(literal)) {
+                ++added;
+                // The literal may match other clauses with another set of literals
+                order.insert(literal);
+            }
+        }
+
+        db.removeDeletedClauses();
+        return added;
+    }
+
+    /**
+     * Find the largest reduction starting from a literal and apply it if it saves clauses.
+     * @param literal literal
+     * @return true if a variable was added, false otherwise
+     */
+    private boolean tryReplace(int literal) {
+        matchedLiterals.clear();
+        matchedLiterals.add(literal);
+        matchedClauses.clear();
+        IntList list = OccurrenceUtil.compact(arena, occurrences[literal]);
+        for (int i = 0; i < list.size(); ++i) {
+            int size = arena.size(list.get(i));
+            if (size >= 2 && size <= CLAUSE_SIZE_LIMIT) {
+                matchedClauses.add(list.get(i));
+            }
+        }
+
+        inMatchedLiterals[literal] = true;
+        while (true) {
+            int best = findBestMatch(literal);
+            if (best == LiteralUtil.UNDEFINED || reduction(matchedLiterals.size() + 1, matchCounts[best])
+                    <= reduction(matchedLiterals.size(), matchedClauses.size())) {
+                break;
+            }
+            matchedLiterals.add(best);
+            inMatchedLiterals[best] = true;
+            int j = 0;
+            for (int i = 0; i < matches.size(); i += 2) {
+                if (matches.get(i) == best) {
+                    matchedClauses.set(j++, matchedClauses.get(matches.get(i + 1)));
+                }
+            }
+            matchedClauses.shrink(j);
+        }
+        for (int i = 0; i < matchedLiterals.size(); ++i) {
+            inMatchedLiterals[matchedLiterals.get(i)] = false;
+        }
+
+        if (reduction(matchedLiterals.size(), matchedClauses.size()) <= 0) {
+            return false;
+        }
+        replace(literal);
+        return true;
+    }
+
+    /**
+     * Collect in {@code matches} every literal not in L whose clause with the other literals of a clause of M
+     * exists, and find the literal with the most such clauses.
+     * @param literal literal the clauses of M were found with
+     * @return literal with the most matches, or {@code LiteralUtil.UNDEFINED} if there is none
+     */
+    private int findBestMatch(int literal) {
+        matches.clear();
+        for (int i = 0; i < matchedClauses.size(); ++i) {
+            int c = matchedClauses.get(i);
+            for (int k = 0; k < arena.size(c); ++k) {
+                marks[arena.literal(c, k)] = true;
+            }
+            int rarest = rarestOtherLiteral(c, literal);
+            IntList candidates = OccurrenceUtil.compact(arena, occurrences[rarest]);
+            steps += candidates.size();
+            for (int k = 0; k < candidates.size(); ++k) {
+                int match = differingLiteral(c, literal, candidates.get(k));
+                // Each literal is counted once per clause, even if the CNF contains duplicate clauses
+                if (match == LiteralUtil.UNDEFINED || inMatchedLiterals[match] || matchStamps[match] == i + 1) {
+                    continue;
+                }
+                if (matchStamps[match] == 0) {
+                    matchCounts[match] = 0;
+                }
+                matchStamps[match] = i + 1;
+                ++matchCounts[match];
+                matches.add(match);
+                matches.add(i);
+            }
+            for (int k = 0; k < arena.size(c); ++k) {
+                marks[arena.literal(c, k)] = false;
+            }
+        }
+
+        int best = LiteralUtil.UNDEFINED;
+        for (int i = 0; i < matches.size(); i += 2) {
+            int match = matches.get(i);
+            if (best == LiteralUtil.UNDEFINED || matchCounts[match] > matchCounts[best]) {
+                best = match;
+            }
+        }
+        for (int i = 0; i < matches.size(); i += 2) {
+            matchStamps[matches.get(i)] = 0;
+        }
+        return best;
+    }
+
+    /**
+     * Replace the clauses of every literal of L with every clause of M by the clauses over a new variable.
+     * @param literal literal the clauses of M were found with
+     */
+    private void replace(int literal) {
+        int variable = db.addAuxiliaryVariable();
+        grow(2 * db.getNumberOfLiterals());
+        int positive = LiteralUtil.toLiteral(variable, true);
+        int negative = LiteralUtil.toLiteral(variable, false);
+
+        for (int i = 0; i < matchedClauses.size(); ++i) {
+            int c = matchedClauses.get(i);
+            for (int j = 1; j < matchedLiterals.size(); ++j) {
+                int d = findClause(c, literal, matchedLiterals.get(j));
+                if (d != ClauseArena.NO_CLAUSE) {
+                    removeClause(d);
+                }
+            }
+            clause.clear();
+            clause.add(positive);
+            for (int k = 0; k < arena.size(c); ++k) {
+                if (arena.literal(c, k) != literal) {
+                    clause.add(arena.literal(c, k));
+                }
+            }
+            removeClause(c);
+            addOccurrences(db.insertClause(clause));
+        }
+        for (int j = 0; j < matchedLiterals.size(); ++j) {
+            clause.clear();
+            clause.add(negative);
+            clause.add(matchedLiterals.get(j));
+            addOccurrences(db.insertClause(clause));
+        }
+    }
+
+    /**
+     * Find the clause with the literals of a clause except one literal, which is replaced by another literal.
+     * @param cref clause reference
+     * @param literal literal to leave out
+     * @param replacement literal to add
+     * @return reference of the clause found, or {@code ClauseArena.NO_CLAUSE} if there is none
+     */
+    private int findClause(int cref, int literal, int replacement) {
+        for (int k = 0; k < arena.size(cref); ++k) {
+            marks[arena.literal(cref, k)] = true;
+        }
+        int found = ClauseArena.NO_CLAUSE;
+        IntList candidates = OccurrenceUtil.compact(arena, occurrences[replacement]);
+        for (int k = 0; k < candidates.size(); ++k) {
+            if (differingLiteral(cref, literal, candidates.get(k)) == replacement) {
+                found = candidates.get(k);
+                break;
+            }
+        }
+        for (int k = 0; k < arena.size(cref); ++k) {
+            marks[arena.literal(cref, k)] = false;
+        }
+        return found;
+    }
+
+    /**
+     * Check if a clause has the literals of a marked clause except one literal, which is replaced by another.
+     * @param cref reference of the marked clause
+     * @param literal literal of the marked clause to leave out
+     * @param other reference of the other clause
+     * @return literal of the other clause that is not in the marked clause, or {@code LiteralUtil.UNDEFINED} if the
+     *         clauses do not differ that way
+     */
+    private int differingLiteral(int cref, int literal, int other) {
+        if (other == cref || arena.size(other) != arena.size(cref)) {
+            return LiteralUtil.UNDEFINED;
+        }
+        int differing = LiteralUtil.UNDEFINED;
+        for (int k = 0; k < arena.size(other); ++k) {
+            int l = arena.literal(other, k);
+            if (l == literal) {
+                return LiteralUtil.UNDEFINED;
+            }
+            if (!marks[l]) {
+                if (differing != LiteralUtil.UNDEFINED) {
+                    return LiteralUtil.UNDEFINED;
+                }
+                differing = l;
+            }
+        }
+        return differing;
+    }
+
+    private int rarestOtherLiteral(int cref, int literal) {
+        int rarest = LiteralUtil.UNDEFINED;
+        for (int k = 0; k < arena.size(cref); ++k) {
+            int l = arena.literal(cref, k);
+            if (l != literal && (rarest == LiteralUtil.UNDEFINED
+                    || occurrences[l].size() < occurrences[rarest].size())) {
+                rarest = l;
+            }
+        }
+        return rarest;
+    }
+
+    /**
+     * Number of clauses saved by replacing the clauses of {@code literals} literals with {@code clauses} clauses.
+     */
+    private static int reduction(int literals, int clauses) {
+        return literals * clauses - literals - clauses;
+    }
+
+    private void addOccurrences(int cref) {
+        for (int k = 0; k < arena.size(cref); ++k) {
+            int literal = arena.literal(cref, k);
+            occurrences[literal].add(cref);
+            updatePriority(literal, 1);
+        }
+    }
+
+    private void removeClause(int cref) {
+        arena.delete(cref);
+        for (int k = 0; k < arena.size(cref); ++k) {
+            updatePriority(arena.literal(cref, k), -1);
+        }
+    }
+
+    private void updatePriority(int literal, int amount) {
+        if (literal < priorities.length) {
+            priorities[literal] += amount;
+            order.update(literal);
+        }
+    }
+
+    /**
+     * Make room for the literals of added variables.
+     * @param numberOfLiterals number of literals
+     */
+    private void grow(int numberOfLiterals) {
+        int size = occurrences.length;
+        if (numberOfLiterals <= size) {
+            return;
+        }
+        occurrences = Arrays.copyOf(occurrences, numberOfLiterals);
+        for (int i = size; i < numberOfLiterals; ++i) {
+            occurrences[i] = new IntList(4);
+        }
+        matchCounts = Arrays.copyOf(matchCounts, numberOfLiterals);
+        matchStamps = Arrays.copyOf(matchStamps, numberOfLiterals);
+        marks = Arrays.copyOf(marks, numberOfLiterals);
+        inMatchedLiterals = Arrays.copyOf(inMatchedLiterals, numberOfLiterals);
+    }
+}
@@ -0,0 +1,263 @@
+package preprocess;
+
+import datastruct.ClauseArena;
+import datastruct.IntList;
+import datastruct.ReconstructionStack;
+import db.ClauseDB;
+import util.LiteralUtil;
+
+/**
+ * Equivalent literal substitution. Every binary clause (a, b) gives the implications -a -> b and -b -> a, and the
+ * literals of a strongly connected component of these implications are all equivalent. Each component is replaced by
+ * the literal of its lowest variable throughout the clauses, and the replaced variables are eliminated with their
+ * equivalence pushed to the reconstruction stack. A component containing both literals of a variable makes the CNF
+ * unsatisfiable, which is recorded by adding the empty clause.
+ */
+public class EquivalenceSubstitution {
+
+    private static final int UNVISITED = -1;
+
+    private ClauseDB db;
+    private ClauseArena arena;
+    private int numberOfLiterals;
+
+    /**
+     * Binary implications from each literal, indexed by literal.
+     */
+    private IntList[] implications;
+
+    /**
+     * Literal each literal is replaced by, indexed by literal.
+     */
+    private int[] replacements;
+
+    /**
+     * State of Tarjan's algorithm, indexed by literal.
+     */
+    private int[] indices;
+    private int[] lowLinks;
+    private boolean[] onStack;
+    private IntList stack;
+
+    private boolean[] marks;
+    private IntList literals;
+    private boolean unsatisfiable;
+
+    /**
+     * Literal in the same component as its negation, if the binary clauses are unsatisfiable.
+     */
+    private int contradiction;
+
+    public EquivalenceSubstitution(ClauseDB db) {
+        this.db = db;
+        arena = db.getArena();
+        numberOfLiterals = 2 * db.getNumberOfLiterals();
+        implications = new IntList[numberOfLiterals];
+        for (int i = 0; i < numberOfLiterals; ++i) {
+            implications[i] = new IntList(2);
+        }
+        replacements = new int[numberOfLiterals];
+        indices = new int[numberOfLiterals];
+        lowLinks = new int[numberOfLiterals];
+        onStack = new boolean[numberOfLiterals];
+        stack = new IntList();
+        marks = new boolean[numberOfLiterals];
+        literals = new IntList();
+        unsatisfiable = false;
+    }
+
+    /**
+     * Find equivalent literals and substitute them in the clauses of the database.
+     * @return number of variables substituted
+     */
+    public int substitute() {
+        IntList clauses = db.getClauseReferences();
+        for (int i = 0; i < clauses.size(); ++i) {
+            int cref = clauses.get(i);
+            if (arena.size(cref) != 2) {
+                continue;
+            }
+            int first = arena.literal(cref, 0);
+            int second = arena.literal(cref, 1);
+            implications[LiteralUtil.negate(first)].add(second);
+            implications[LiteralUtil.negate(second)].add(first);
+        }
+
+        for (int l = 0; l < numberOfLiterals; ++l) {
+            replacements[l] = l;
+            indices[l] = UNVISITED;
+        }
+        int index = 0;
+        for (int l = 0; l < numberOfLiterals && !unsatisfiable; ++l) {
+            if (indices[l] == UNVISITED) {
+                index = findComponents(l, index);
+            }
+        }
+        if (unsatisfiable) {
+            // The literal implies its negation, so the proof needs the negation as a unit before the empty clause
+            literals.clear();
+            literals.add(LiteralUtil.negate(contradiction));
+            db.writeProofClause(literals, false);
+            literals.clear();
+            db.insertClause(literals);
+            return 0;
+        }
+
+        int substituted = 0;
+        ReconstructionStack reconstructionStack = db.getReconstructionStack();
+        for (int v = 0; v < numberOfLiterals / 2; ++v) {
+            int literal = LiteralUtil.toLiteral(v, true);
+            int replacement = replacements[literal];
+            if (replacement == literal) {
+                continue;
+            }
+            // Restore the variable as equal to its replacement
+            literals.clear();
+            literals.add(LiteralUtil.negate(replacement));
+            reconstructionStack.push(literal, literals);
+            literals.set(0, replacement);
+            reconstructionStack.push(LiteralUtil.negate(literal), literals);
+            db.eliminateVariable(v);
+            ++substituted;
+        }
+        if (substituted == 0) {
+            return 0;
+        }
+
+        int size = clauses.size();
+        for (int i = 0; i < size; ++i) {
+            substituteClause(clauses.get(i));
+        }
+        db.removeDeletedClauses();
+        return substituted;
+    }
+
+    /**
+     * Replace the literals of a clause with their replacements, deleting the clause if it changes. The replaced
+     * clause is added unless it became a tautology.
+     * @param cref clause reference
+     */
+    private void substituteClause(int cref) {
+        boolean changed = false;
+        for (int i = 0; i < arena.size(cref); ++i) {
+            int literal = arena.literal(cref, i);
+            if (replacements[literal] != literal) {
+                changed = true;
+                break;
+            }
+        }
+        if (!changed) {
+            return;
+        }
+
+        literals.clear();
+        boolean tautology = false;
+        for (int i = 0; i < arena.size(cref); ++i) {
+            int literal = replacements[arena.literal(cref, i)];
+            if (marks[LiteralUtil.negate(literal)]) {
+                tautology = true;
+                break;
+            }
+            if (!marks[literal]) {
+                marks[literal] = true;
+                literals.add(literal);
+            }
+        }
+        for (int i = 0; i < literals.size(); ++i) {
+            marks[literals.get(i)] = false;
+        }
+        arena.delete(cref);
+        if (!tautology) {
+            db.insertClause(literals);
+        }
+    }
+
+    /**
+     * Tarjan's strongly connected components algorithm from a literal, with an explicit stack instead of recursion.
+     * Sets the replacement of every literal of each component found.
+     * @param root literal to start from
+     * @param index next visit index
+     * @return next visit index after the search
+     */
+    private int findComponents(int root, int index) {
+        // Call stack of literals and the position of the next implication to follow from each
+        IntList callStack = new IntList();
+        IntList positions = new IntList();
+        indices[root] = index;
+        lowLinks[root] = index++;
+        stack.add(root);
+        onStack[root] = true;
+        callStack.add(root);
+        positions.add(0);
+
+        while (!callStack.isEmpty()) {
+            int top = callStack.size() - 1;
+            int literal = callStack.get(top);
+            int position = positions.get(top);
+            if (position < implications[literal].size()) {
+                positions.set(top, position + 1);
+                int next = implications[literal].get(position);
+                if (indices[next] == UNVISITED) {
+                    indices[next] = index;
+                    lowLinks[next] = index++;
+                    stack.add(next);
+                    onStack[next] = true;
+                    callStack.add(next);
+                    positions.add(0);
+                } else if (onStack[next]) {
+                    lowLinks[literal] = Math.min(lowLinks[literal], indices[next]);
+                }
+                continue;
+            }
+
+            callStack.removeLast();
+            positions.removeLast();
+            if (!callStack.isEmpty()) {
+                int parent = callStack.get(callStack.size() - 1);
+                lowLinks[parent] = Math.min(lowLinks[parent], lowLinks[literal]);
+            }
+            if (lowLinks[literal] == indices[literal]) {
+                popComponent(literal);
+                if (unsatisfiable) {
+                    return index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Pop a component off the Tarjan stack and replace its literals with the literal of its lowest variable. The
+     * component of the negated literals has the negated lowest literal, so replacements stay consistent.
+     * @param root root literal of the component
+     */
+    private void popComponent(int root) {
+        int start = stack.size();
+        do {
+            --start;
+        } while (stack.get(start) != root);
+
+        int representative = root;
+        for (int i = start; i < stack.size(); ++i) {
+            int literal = stack.get(i);
+            marks[literal] = true;
+            if (LiteralUtil.getVariable(literal) < LiteralUtil.getVariable(representative)) {
+                representative = literal;
+            }
+        }
+        for (int i = start; i < stack.size(); ++i) {
+            int literal = stack.get(i);
+            if (marks[LiteralUtil.negate(literal)]) {
+                unsatisfiable = true;
+                contradiction = literal;
+            }
+        }
+        for (int i = start; i < stack.size(); ++i) {
+            int literal = stack.get(i);
+            marks[literal] = false;
+            onStack[literal] = false;
+            replacements[literal] = representative;
+        }
+        stack.shrink(start);
+    }
+}
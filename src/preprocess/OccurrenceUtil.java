@@ -0,0 +1,26 @@
+package preprocess;
+
+import datastruct.ClauseArena;
+import datastruct.IntList;
+
+/**
+ * Helpers for the occurrence lists of the preprocessors, which list the clauses each literal occurs in.
+ */
+class OccurrenceUtil {
+    /**
+     * Drop deleted clauses from an occurrence list.
+     * @param arena arena of the clauses
+     * @param list occurrence list
+     * @return the same list
+     */
+    static IntList compact(ClauseArena arena, IntList list) {
+        int j = 0;
+        for (int i = 0; i < list.size(); ++i) {
+            if (!arena.isDeleted(list.get(i))) {
+                list.set(j++, list.get(i));
+            }
+        }
+        list.shrink(j);
+        return list;
+    }
+}
@@ -0,0 +1,338 @@
+package preprocess;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+
+import datastruct.ClauseArena;
+import datastruct.IntList;
+import db.ClauseDB;
+import util.LiteralUtil;
+
+/**
+ * Removes subsumed clauses and strengthens clauses by self-subsuming resolution. A clause C subsumes a clause D if
+ * every literal of C is in D, in which case D is redundant. If all literals of C but one are in D and the negation of
+ * the remaining literal is, D can be strengthened by removing that negated literal.
+ * <p>
+ * Candidate pairs are found through occurrence lists and filtered with 64-bit signatures of the variables of each
+ * clause. The read-only checks are split across a fork-join pool, and the changes they find are applied afterwards
+ * on the calling thread, after checking again that they still hold.
+ */
+public class Subsumer {
+
+    /**
+     * Longest clause used to subsume or strengthen other clauses.
+     */
+    private static final int SUBSUMER_SIZE_LIMIT = 100;
+
+    /**
+     * Clauses checked by one fork-join task without splitting further.
+     */
+    private static final int TASK_SIZE = 256;
+
+    private static final int MAX_ROUNDS = 4;
+
+    /**
+     * Results of a check of two clauses. Other results are the literal to remove from the second clause.
+     */
+    private static final int NO_RESULT = -2;
+    private static final int SUBSUMED = -1;
+
+    private ClauseDB db;
+    private ClauseArena arena;
+    private ForkJoinPool pool;
+
+    /**
+     * Clauses of the current run, with the signature of each clause and the indices of the clauses each literal
+     * occurs in.
+     */
+    private IntList clauses;
+    private long[] signatures;
+    private IntList[] occurrences;
+
+    /**
+     * Whether each literal is in the clause being collected, indexed by literal.
+     */
+    private boolean[] marks;
+
+    private IntList strengthened;
+    private int subsumedCount;
+    private int strengthenedCount;
+
+    public Subsumer(ClauseDB db) {
+        this(db, ForkJoinPool.commonPool());
+    }
+
+    public Subsumer(ClauseDB db, ForkJoinPool pool) {
+        this.db = db;
+        this.arena = db.getArena();
+        this.pool = pool;
+        clauses = new IntList();
+        strengthened = new IntList();
+    }
+
+    /**
+     * Subsume and strengthen the clauses of the CNF until nothing changes, then remove the deleted clauses from the
+     * database.
+     * @return number of clauses removed or strengthened
+     */
+    public int simplifyClauses() {
+        int before = subsumedCount + strengthenedCount;
+        for (int round = 0; round < MAX_ROUNDS; ++round) {
+            collect(db.getClauseReferences(), true);
+            if (run(true, cref -> false) == 0) {
+                break;
+            }
+        }
+        db.removeDeletedClauses();
+        return subsumedCount + strengthenedCount - before;
+    }
+
+    /**
+     * Delete learnt clauses subsumed by other learnt clauses. Learnt clauses are not strengthened, since that would
+     * change clauses watched by the solver. Deleted clauses are only marked in the arena, and the caller must remove
+     * them from the database and relocate its references.
+     * @param locked clauses that must not be deleted, such as the reasons of assignments
+     * @return number of clauses deleted
+     */
+    public int subsumeLearntClauses(IntPredicate locked) {
+        collect(db.getLearntClauseReferences(), false);
+        return run(false, locked);
+    }
+
+    public int getSubsumedCount() {
+        return subsumedCount;
+    }
+
+    public int getStrengthenedCount() {
+        return strengthenedCount;
+    }
+
+    /**
+     * Build signatures and occurrence lists of the clauses that are not deleted. Tautologies are left out, since a
+     * tautology would match a literal of another clause both as itself and as its negation.
+     * @param references clause references
+     * @param deleteTautologies whether to delete the tautologies, which are satisfied by every assignment
+     */
+    private void collect(IntList references, boolean deleteTautologies) {
+        if (occurrences == null || occurrences.length != 2 * db.getNumberOfLiterals()) {
+            occurrences = new IntList[2 * db.getNumberOfLiterals()];
+            for (int i = 0; i < occurrences.length; ++i) {
+                occurrences[i] = new IntList(4);
+            }
+            marks = new boolean[occurrences.length];
+        }
+        clauses.clear();
+        for (int i = 0; i < references.size(); ++i) {
+            int cref = references.get(i);
+            if (arena.isDeleted(cref)) {
+                continue;
+            }
+            if (isTautology(cref)) {
+                if (deleteTautologies) {
+                    arena.delete(cref);
+                }
+                continue;
+            }
+            clauses.add(cref);
+        }
+        signatures = new long[clauses.size()];
+        for (IntList list : occurrences) {
+            list.clear();
+        }
+        for (int i = 0; i < clauses.size(); ++i) {
+            int cref = clauses.get(i);
+            long signature = 0;
+            for (int k = 0; k < arena.size(cref); ++k) {
+                int literal = arena.literal(cref, k);
+                signature |= 1L << (LiteralUtil.getVariable(literal) & 63);
+                occurrences[literal].add(i);
+            }
+            signatures[i] = signature;
+        }
+    }
+
+    private boolean isTautology(int cref) {
+        boolean tautology = false;
+        for (int i = 0; i < arena.size(cref); ++i) {
+            int literal = arena.literal(cref, i);
+            if (marks[LiteralUtil.negate(literal)]) {
+                tautology = true;
+            }
+            marks[literal] = true;
+        }
+        for (int i = 0; i < arena.size(cref); ++i) {
+            marks[arena.literal(cref, i)] = false;
+        }
+        return tautology;
+    }
+
+    /**
+     * Find subsumed and strengthenable clauses in parallel, then apply the changes.
+     * @param strengthen whether to strengthen clauses by self-subsuming resolution
+     * @param locked clauses that must not be changed
+     * @return number of clauses changed
+     */
+    private int run(boolean strengthen, IntPredicate locked) {
+        IntList found = pool.invoke(new CheckTask(0, clauses.size(), strengthen));
+
+        int changed = 0;
+        strengthened.clear();
+        for (int i = 0; i < found.size(); i += 2) {
+            int c = clauses.get(found.get(i));
+            int d = clauses.get(found.get(i + 1));
+            if (arena.isDeleted(c) || arena.isDeleted(d) || locked.test(d)) {
+                continue;
+            }
+            // An earlier change may have strengthened the subsuming clause
+            int result = check(c, d, strengthen);
+            if (result == NO_RESULT) {
+                continue;
+            }
+            if (result != SUBSUMED) {
+                strengthen(d, result);
+                ++strengthenedCount;
+            } else {
+                ++subsumedCount;
+            }
+            arena.delete(d);
+            ++changed;
+        }
+        return changed;
+    }
+
+    /**
+     * Add a copy of a clause without one literal to the database.
+     * @param cref clause reference
+     * @param literal literal to remove
+     */
+    private void strengthen(int cref, int literal) {
+        strengthened.clear();
+        for (int i = 0; i < arena.size(cref); ++i) {
+            if (arena.literal(cref, i) != literal) {
+                strengthened.add(arena.literal(cref, i));
+            }
+        }
+        db.insertClause(strengthened);
+    }
+
+    /**
+     * Check if a clause subsumes or strengthens another clause.
+     * @param c clause reference of the subsuming clause
+     * @param d clause reference of the other clause
+     * @param strengthen whether to look for self-subsuming resolution
+     * @return {@code SUBSUMED}, the literal to remove from the other clause, or {@code NO_RESULT}
+     */
+    private int check(int c, int d, boolean strengthen) {
+        int result = SUBSUMED;
+        for (int i = 0; i < arena.size(c); ++i) {
+            int literal = arena.literal(c, i);
+            int negated = LiteralUtil.negate(literal);
+            boolean found = false;
+            for (int j = 0; j < arena.size(d); ++j) {
+                int other = arena.literal(d, j);
+                if (other == literal) {
+                    found = true;
+                    break;
+                }
+                if (other == negated && strengthen && result == SUBSUMED) {
+                    result = negated;
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return NO_RESULT;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks a range of clauses against the clauses found through their occurrence lists. Found pairs are returned
+     * as consecutive indices of the subsuming clause and the other clause.
+     */
+    private class CheckTask extends RecursiveTask<IntList> {
+        private static final long serialVersionUID = 1L;
+
+        private int from;
+        private int to;
+        private boolean strengthen;
+
+        CheckTask(int from, int to, boolean strengthen) {
+            this.from = from;
+            this.to = to;
+            this.strengthen = strengthen;
+        }
+
+        @Override
+        protected IntList compute() {
+            if (to - from > TASK_SIZE) {
+                int middle = (from + to) >>> 1;
+                CheckTask left = new CheckTask(from, middle, strengthen);
+                left.fork();
+                IntList found = new CheckTask(middle, to, strengthen).compute();
+                IntList leftFound = left.join();
+                for (int i = 0; i < found.size(); ++i) {
+                    leftFound.add(found.get(i));
+                }
+                return leftFound;
+            }
+
+            IntList found = new IntList();
+            for (int i = from; i < to; ++i) {
+                checkClause(i, found);
+            }
+            return found;
+        }
+
+        /**
+         * Check one clause against the clauses containing its literal with the fewest occurrences, or its negation.
+         * @param index index of the clause
+         * @param found list to add found pairs to
+         */
+        private void checkClause(int index, IntList found) {
+            int c = clauses.get(index);
+            int size = arena.size(c);
+            if (size == 0 || size > SUBSUMER_SIZE_LIMIT) {
+                return;
+            }
+            int best = arena.literal(c, 0);
+            for (int k = 1; k < size; ++k) {
+                int literal = arena.literal(c, k);
+                if (count(literal) < count(best)) {
+                    best = literal;
+                }
+            }
+            checkOccurrences(index, occurrences[best], found);
+            if (strengthen) {
+                checkOccurrences(index, occurrences[LiteralUtil.negate(best)], found);
+            }
+        }
+
+        private int count(int literal) {
+            int count = occurrences[literal].size();
+            return strengthen ? count + occurrences[LiteralUtil.negate(literal)].size() : count;
+        }
+
+        private void checkOccurrences(int index, IntList candidates, IntList found) {
+            int c = clauses.get(index);
+            int size = arena.size(c);
+            for (int k = 0; k < candidates.size(); ++k) {
+                int other = candidates.get(k);
+                int d = clauses.get(other);
+                if (other == index || arena.size(d) < size || (signatures[index] & ~signatures[other]) != 0) {
+                    continue;
+                }
+                // Of two equal clauses only the later one is subsumed
+                if (arena.size(d) == size && other < index && check(d, c, false) == SUBSUMED) {
+                    continue;
+                }
+                if (check(c, d, strengthen) != NO_RESULT) {
+                    found.add(index);
+                    found.add(other);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package preprocess;
+
+import datastruct.ClauseArena;
+import datastruct.IntList;
+import datastruct.ReconstructionStack;
+import datastruct.VariableHeap;
+import db.ClauseDB;
+import util.LiteralUtil;
+
+/**
+ * Bounded variable elimination as in SatELite. A variable is eliminated by replacing the clauses it occurs in with
+ * all their non-tautological resolvents on it, as long as that does not increase the number of clauses and no
+ * resolvent is too long. Variables are tried in order of the number of resolutions they need, which is the product
+ * of the occurrences of their two literals. Removed clauses are pushed to the reconstruction stack of the database.
+ */
+public class VariableEliminator {
+
+    /**
+     * Longest resolvent allowed.
+     */
+    private static final int RESOLVENT_LIMIT = 20;
+
+    /**
+     * Most pairs of clauses resolved to try eliminating a variable.
+     */
+    private static final int RESOLUTION_LIMIT = 1000;
+
+    private ClauseDB db;
+    private ClauseArena arena;
+    private ReconstructionStack reconstructionStack;
+
+    /**
+     * References of the clauses each literal occurs in, indexed by literal. Deleted clauses are removed lazily.
+     */
+    private IntList[] occurrences;
+    private int[] occurrenceCounts;
+
+    /**
+     * Elimination order, by negated number of resolutions so that the cheapest variable is on top.
+     */
+    private double[] priorities;
+    private VariableHeap order;
+
+    private boolean[] marks;
+    private IntList resolvent;
+    private IntList positive;
+    private IntList negative;
+
+    private boolean unsatisfiable;
+
+    public VariableEliminator(ClauseDB db) {
+        this.db = db;
+        arena = db.getArena();
+        reconstructionStack = db.getReconstructionStack();
+        int numberOfVariables = db.getNumberOfLiterals();
+        occurrences = new IntList[2 * numberOfVariables];
+        for (int i = 0; i < occurrences.length; ++i) {
+            occurrences[i] = new IntList(4);
+        }
+        occurrenceCounts = new int[2 * numberOfVariables];
+        priorities = new double[numberOfVariables];
+        order = new VariableHeap(priorities);
+        marks = new boolean[2 * numberOfVariables];
+        resolvent = new IntList();
+        positive = new IntList();
+        negative = new IntList();
+        unsatisfiable = false;
+    }
+
+    /**
+     * Eliminate variables of the clauses in the database.
+     * @return number of variables eliminated
+     */
+    public int eliminate() {
+        IntList clauses = db.getClauseReferences();
+        for (int i = 0; i < clauses.size(); ++i) {
+            int cref = clauses.get(i);
+            // Tautologies are satisfied by every assignment, and resolving on them is unsound
+            if (isTautology(cref)) {
+                arena.delete(cref);
+                continue;
+            }
+            addOccurrences(cref);
+        }
+        for (int v = 0; v < priorities.length; ++v) {
+            touch(v);
+        }
+
+        int eliminated = 0;
+        while (!order.isEmpty() && !unsatisfiable) {
+            int v = order.removeMax();
+            if (tryEliminate(v)) {
+                ++eliminated;
+            }
+        }
+
+        db.removeDeletedClauses();
+        return eliminated;
+    }
+
+    /**
+     * Eliminate a variable if the resolvents are few and short enough.
+     * @param variable variable
+     * @return true if the variable is eliminated, false otherwise
+     */
+    private boolean tryEliminate(int variable) {
+        int positiveLiteral = LiteralUtil.toLiteral(variable, true);
+        int negativeLiteral = LiteralUtil.toLiteral(variable, false);
+        collectOccurrences(positiveLiteral, positive);
+        collectOccurrences(negativeLiteral, negative);
+        if ((long) positive.size() * negative.size() > RESOLUTION_LIMIT) {
+            return false;
+        }
+
+        // Check that eliminating does not add clauses or long resolvents before changing anything
+        int limit = positive.size() + negative.size();
+        int count = 0;
+        for (int i = 0; i < positive.size(); ++i) {
+            for (int j = 0; j < negative.size(); ++j) {
+                if (!resolve(positive.get(i), negative.get(j), variable)) {
+                    continue;
+                }
+                if (resolvent.size() > RESOLVENT_LIMIT || ++count > limit) {
+                    return false;
+                }
+            }
+        }
+
+        for (int i = 0; i < positive.size(); ++i) {
+            for (int j = 0; j < negative.size(); ++j) {
+                if (!resolve(positive.get(i), negative.get(j), variable)) {
+                    continue;
+                }
+                int cref = db.insertClause(resolvent);
+                addOccurrences(cref);
+                if (resolvent.isEmpty()) {
+                    unsatisfiable = true;
+                }
+            }
+        }
+        db.eliminateVariable(variable);
+        removeClauses(positiveLiteral, positive);
+        removeClauses(negativeLiteral, negative);
+        return true;
+    }
+
+    /**
+     * Resolve two clauses on a variable into {@code resolvent}.
+     * @param first clause containing the positive literal of the variable
+     * @param second clause containing the negative literal of the variable
+     * @param variable variable to resolve on
+     * @return false if the resolvent is a tautology, true otherwise
+     */
+    private boolean resolve(int first, int second, int variable) {
+        resolvent.clear();
+        for (int i = 0; i < arena.size(first); ++i) {
+            int literal = arena.literal(first, i);
+            if (LiteralUtil.getVariable(literal) != variable && !marks[literal]) {
+                marks[literal] = true;
+                resolvent.add(literal);
+            }
+        }
+        int firstSize = resolvent.size();
+        boolean tautology = false;
+        for (int i = 0; i < arena.size(second); ++i) {
+            int literal = arena.literal(second, i);
+            if (LiteralUtil.getVariable(literal) == variable || marks[literal]) {
+                continue;
+            }
+            if (marks[LiteralUtil.negate(literal)]) {
+                tautology = true;
+                break;
+            }
+            resolvent.add(literal);
+        }
+        for (int i = 0; i < firstSize; ++i) {
+            marks[resolvent.get(i)] = false;
+        }
+        return !tautology;
+    }
+
+    private boolean isTautology(int cref) {
+        boolean tautology = false;
+        for (int i = 0; i < arena.size(cref); ++i) {
+            int literal = arena.literal(cref, i);
+            if (marks[LiteralUtil.negate(literal)]) {
+                tautology = true;
+            }
+            marks[literal] = true;
+        }
+        for (int i = 0; i < arena.size(cref); ++i) {
+            marks[arena.literal(cref, i)] = false;
+        }
+        return tautology;
+    }
+
+    /**
+     * Collect the clauses a literal occurs in, dropping deleted clauses from its occurrence list.
+     * @param literal literal
+     * @param clauses list to collect the clause references into
+     */
+    private void collectOccurrences(int literal, IntList clauses) {
+        clauses.clear();
+        IntList list = occurrences[literal];
+        int j = 0;
+        for (int i = 0; i < list.size(); ++i) {
+            int cref = list.get(i);
+            if (!arena.isDeleted(cref)) {
+                list.set(j++, cref);
+                clauses.add(cref);
+            }
+        }
+        list.shrink(j);
+    }
+
+    private void addOccurrences(int cref) {
+        for (int i = 0; i < arena.size(cref); ++i) {
+            int literal = arena.literal(cref, i);
+            occurrences[literal].add(cref);
+            ++occurrenceCounts[literal];
+            touch(LiteralUtil.getVariable(literal));
+        }
+    }
+
+    /**
+     * Delete the clauses of an eliminated literal and push them to the reconstruction stack.
+     * @param pivot eliminated literal
+     * @param clauses references of the clauses the literal occurs in
+     */
+    private void removeClauses(int pivot, IntList clauses) {
+        for (int i = 0; i < clauses.size(); ++i) {
+            int cref = clauses.get(i);
+            reconstructionStack.push(pivot, arena, cref);
+            arena.delete(cref);
+            for (int k = 0; k < arena.size(cref); ++k) {
+                int literal = arena.literal(cref, k);
+                --occurrenceCounts[literal];
+                touch(LiteralUtil.getVariable(literal));
+            }
+        }
+    }
+
+    /**
+     * Requeue a variable whose occurrences changed, since it may have become eliminable.
+     * @param variable variable
+     */
+    private void touch(int variable) {
+        if (db.isEliminated(variable)) {
+            return;
+        }
+        updatePriority(variable);
+        if (order.contains(variable)) {
+            order.update(variable);
+        } else {
+            order.insert(variable);
+        }
+    }
+
+    private void updatePriority(int variable) {
+        priorities[variable] = -(double) occurrenceCounts[LiteralUtil.toLiteral(variable, true)]
+                * occurrenceCounts[LiteralUtil.toLiteral(variable, false)];
+    }
+}
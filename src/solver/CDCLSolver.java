@@ -1,26 +1,68 @@
 package solver;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
 
 import config.Config;
-import datastruct.Clause;
+import datastruct.ClauseArena;
+import datastruct.ClauseExchange;
 import datastruct.ImplicationGraph;
+import datastruct.IntList;
 import datastruct.Literal;
-import datastruct.Variable;
 import db.ClauseDB;
+import preprocess.Subsumer;
+import util.LiteralUtil;
 import util.SolverUtil;
 
-public class CDCLSolver extends Solver {
+public class CDCLSolver extends Solver implements IIncrementalSolver {
+
+    static final String CONFLICTS_STATISTIC = "Conflicts";
+    static final String REPHASES_STATISTIC = "Rephases";
+    static final String RESTARTS_STATISTIC = "Restarts";
+    static final String REDUCTIONS_STATISTIC = "Reductions";
+    static final String DELETED_CLAUSES_STATISTIC = "Deleted clauses";
+    static final String SUBSUMED_CLAUSES_STATISTIC = "Subsumed learnt clauses";
+    static final String FAILED_LITERALS_STATISTIC = "Failed literals";
+    static final String PROBING_UNITS_STATISTIC = "Probing units";
+    static final String LEARNT_LITERALS_STATISTIC = "Learnt literals";
+    static final String MINIMIZED_LITERALS_STATISTIC = "Minimized literals";
+    static final String EXPORTED_CLAUSES_STATISTIC = "Exported clauses";
+    static final String IMPORTED_CLAUSES_STATISTIC = "Imported clauses";
+    static final String USED_IMPORTED_CLAUSES_STATISTIC = "Used imported clauses";
+
+    /**
+     * Number of conflicts between the first two rephases. Every later interval is longer by the same amount.
+     */
+    private static final int REPHASE_INTERVAL = 1000;
+    private static final ImplicationGraph.Rephase[] REPHASE_SCHEDULE = {
+            ImplicationGraph.Rephase.ORIGINAL,
+            ImplicationGraph.Rephase.BEST,
+            ImplicationGraph.Rephase.INVERTED,
+            ImplicationGraph.Rephase.BEST,
+            ImplicationGraph.Rephase.RANDOM,
+            ImplicationGraph.Rephase.BEST,
+    };
+
+    /**
+     * Conflicts between two subsumption runs on the learnt clauses. A run waits for the next restart.
+     */
+    private static final int SUBSUMPTION_INTERVAL = 5000;
 
     /**
      * Implication graph that stores implications and assignments of the CNF
      */
     ImplicationGraph graph;
 
+    /**
+     * Watched literal propagation engine that implies variables into the graph.
+     */
+    Propagator propagator;
+
+    /**
+     * Arena of the clause database that the solver works on.
+     */
+    ClauseArena arena;
+
     /**
      * Current decision level of the solver.
      */
@@ -31,13 +73,64 @@ public class CDCLSolver extends Solver {
      */
     int conflictedDecisionLevel;
     /**
-     * Assigned variable which causes conflict.
+     * Assigned literal which causes conflict.
+     */
+    int conflictedLiteral;
+    /**
+     * Reference of the clause that has conflict due to conflicted literal.
+     */
+    int conflictedClause;
+
+    /**
+     * Policy that decides when to restart, or null if the solver never restarts.
+     */
+    RestartPolicy restartPolicy;
+
+    /**
+     * Periodic deletion of learnt clauses.
+     */
+    LearntClauseReducer reducer;
+
+    /**
+     * Subsumption of learnt clauses, or null if disabled.
+     */
+    Subsumer subsumer;
+
+    /**
+     * Failed literal probing before search, or null if disabled.
      */
-    Variable conflictedVariable;
+    FailedLiteralProber prober;
+    private boolean probed;
+
+    /**
+     * Literals decided before any other variable, one per decision level from level 1.
+     */
+    private IntList assumptions;
+    private IntList noAssumptions;
+
+    /**
+     * Assumptions that cannot hold together, set when the last search found an assumption false.
+     */
+    private IntList failedAssumptions;
+
     /**
-     * Clause that has conflict due to conflicted variable.
+     * Whether a clause added between calls is false at level 0, which makes the CNF unsatisfiable.
      */
-    Clause conflictedClause;
+    private boolean inconsistent;
+    private IntList addedClause;
+
+    /**
+     * Exchange of learnt clauses with solvers running in parallel, or null if the solver runs alone.
+     */
+    private ClauseExchange exchange;
+    private int worker;
+    private IntList importedClause;
+    private boolean importConflict;
+
+    private long conflicts;
+    private long nextSubsumption;
+    private long nextRephase;
+    private int rephases;
 
     public CDCLSolver(ClauseDB db) {
         super(db);
@@ -48,10 +141,39 @@ public class CDCLSolver extends Solver {
      * Initialize CDCL solver
      */
     private void initialize() {
+        arena = db.getArena();
         graph = new ImplicationGraph();
-        graph.initialize(db.getAllClauses());
+        graph.initialize(arena, db.getVariableNames());
+        propagator = new Propagator(graph, arena, db.getNumberOfLiterals());
+        propagator.initialize(db.getClauseReferences());
         conflictedDecisionLevel = -1;
+        conflictedLiteral = LiteralUtil.UNDEFINED;
+        conflictedClause = ClauseArena.NO_CLAUSE;
         decisionLevel = 0;
+        conflicts = 0;
+        rephases = 0;
+        nextRephase = REPHASE_INTERVAL;
+        noAssumptions = new IntList();
+        assumptions = noAssumptions;
+        failedAssumptions = new IntList();
+        inconsistent = false;
+        addedClause = new IntList();
+        probed = false;
+        registerStatistic(CONFLICTS_STATISTIC);
+        registerStatistic(REPHASES_STATISTIC);
+        registerStatistic(RESTARTS_STATISTIC);
+        registerStatistic(REDUCTIONS_STATISTIC);
+        registerStatistic(DELETED_CLAUSES_STATISTIC);
+        registerStatistic(SUBSUMED_CLAUSES_STATISTIC);
+        registerStatistic(FAILED_LITERALS_STATISTIC);
+        registerStatistic(PROBING_UNITS_STATISTIC);
+        restartPolicy = createRestartPolicy();
+        reducer = new LearntClauseReducer(db, graph);
+        subsumer = Config.subsumption ? new Subsumer(db) : null;
+        prober = Config.probing ? new FailedLiteralProber(this) : null;
+        nextSubsumption = SUBSUMPTION_INTERVAL;
+        registerStatistic(LEARNT_LITERALS_STATISTIC);
+        registerStatistic(MINIMIZED_LITERALS_STATISTIC);
     }
 
     /**
@@ -59,15 +181,62 @@ public class CDCLSolver extends Solver {
      * @return result of variable assignments in string
      */
     public String evaluate() {
+        switch (search()) {
+            case SAT:
+                return modelToString();
+            case UNSAT:
+                if (assumptions.isEmpty()) {
+                    // The empty clause concludes the proof, if one is written
+                    db.writeProofClause(assumptions, false);
+                }
+                return UNSAT;
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    /**
+     * Search for a model of the CNF under the current assumptions.
+     * @return status of the search, with the model in the graph if satisfiable
+     */
+    SolveResult.Status search() {
+        failedAssumptions.clear();
+        if (inconsistent) {
+            return SolveResult.Status.UNSAT;
+        }
+
+        // A previous call may have stopped at any level, and its learnt clauses are kept
+        backtrack(0);
+
         // If unit propagation failed before even evaluation, return UNSAT
-        if (!unitPropagation(db.getAllClauses())) {
-            return UNSAT;
+        if (!initializeSearch()) {
+            return SolveResult.Status.UNSAT;
         }
 
-        while (!allVariablesAssigned()) {
-            Variable decision = pickBranchingVariable();
-            if (decision == null) {
-                return UNSAT;
+        // Assumptions are checked even once all variables are assigned, since propagation may have falsified them
+        while (decisionLevel < assumptions.size() || !allVariablesAssigned()) {
+            if (isInterrupted()) {
+                return SolveResult.Status.UNKNOWN;
+            }
+
+            int decision;
+            if (decisionLevel < assumptions.size()) {
+                decision = assumptions.get(decisionLevel);
+                byte value = graph.getValue(decision);
+                if (value == ImplicationGraph.FALSE) {
+                    analyzeFailedAssumption(decision);
+                    return SolveResult.Status.UNSAT;
+                }
+                if (value == ImplicationGraph.TRUE) {
+                    // Open an empty level, so that assumption i is always decided at level i + 1
+                    decisionLevel += 1;
+                    continue;
+                }
+            } else {
+                decision = pickBranchingVariable();
+                if (decision == LiteralUtil.UNDEFINED) {
+                    return SolveResult.Status.UNSAT;
+                }
             }
 
             decisionLevel += 1;
@@ -76,222 +245,335 @@ public class CDCLSolver extends Solver {
             graph.addDecisionNode(decision, decisionLevel);
 
             // Propagation does not result in any conflict, continue
-            if (implicationPropagation(db.getAllClauses(), decision)) {
+            if (propagate()) {
                 continue;
             }
 
-            if (Config.logging == Config.Logging.DEBUG) {
-                System.out.println("Decision made during conflict: " + decision);
-                System.out.println("Assignment when conflict:");
-                System.out.println(graph.assignmentsToString());
-                System.out.println(graph.edgesToString());
-                System.out.println();
+            // Keep learning until propagating the learnt clause no longer conflicts
+            do {
+                if (Config.logging == Config.Logging.DEBUG) {
+                    System.out.println("Decision made during conflict: " + literalToString(decision));
+                    System.out.println("Assignment when conflict:");
+                    System.out.println(graph.assignmentsToString());
+                    System.out.println(graph.edgesToString());
+                    System.out.println();
 
-                System.out.println("Conflicting clause: " + conflictedClause.toString());
-                System.out.println("Conflicting assignment: " + conflictedVariable.toString());
-            }
+                    System.out.println("Conflicting clause: " + graph.clauseToString(conflictedClause));
+                    System.out.println("Conflicting assignment: " + literalToString(conflictedLiteral));
+                }
 
-            // Perform conflict analysis to learn new clause and level to backtrack to
-            int backtrackLevel = conflictAnalysis();
+                // Perform conflict analysis to learn new clause and level to backtrack to
+                int backtrackLevel = conflictAnalysis();
 
-            if (backtrackLevel == -1) {
-                return UNSAT;
-            }
+                if (backtrackLevel == -1) {
+                    return SolveResult.Status.UNSAT;
+                }
 
-            backtrack(backtrackLevel);
+                backtrack(backtrackLevel);
 
-            if (!forceSatisfyClause(db.getLastLearntClause())) {
-                return UNSAT;
+                if (!forceSatisfyClause(db.getLastLearntClauseReference())) {
+                    return SolveResult.Status.UNSAT;
+                }
+                db.clearLastLearntClause();
+            } while (!propagate());
+
+            if (reducer.shouldReduce()) {
+                reduceLearntClauses();
+            }
+            if (restartPolicy != null && !allVariablesAssigned() && restartPolicy.shouldRestart()) {
+                restart();
+            }
+            if (subsumer != null && decisionLevel == 0 && conflicts >= nextSubsumption) {
+                subsumeLearntClauses();
+            }
+            if (exchange != null && decisionLevel == 0 && !importClauses()) {
+                return SolveResult.Status.UNSAT;
             }
-            db.clearLastLearntClause();
         }
 
-        if (!SolverUtil.checkSatisfiability(db.getAllClauses(), graph.getAssignments())) {
-            return UNSAT;
+        if (!SolverUtil.checkSatisfiability(arena, db.getClauseReferences(), graph)) {
+            return SolveResult.Status.UNSAT;
         }
 
-        return graph.assignmentsToString();
+        return SolveResult.Status.SAT;
     }
 
     /**
-     * Perform unit propagation, which checks if there are variables that can be assigned / implied due
-     * to several reasons such as:
-     * 1. It is a unit clause
-     * 2. There is only 1 unassigned variable in the clause
-     * @param clauses clauses in CNF
-     * @return true if there are no conflicts after propagation, false otherwise
+     * Solve the CNF under assumptions, which are decided before any other variable. Learnt clauses do not depend on
+     * the assumptions, so they are kept for later calls.
+     * @param assumptions literals assumed true
+     * @return result of variable assignments in string, or {@code UNSAT} if no model satisfies the assumptions
      */
-    boolean unitPropagation(Set<Clause> clauses) {
-        Set<Clause> unitClauses = new HashSet<>();
-        Set<Clause> nonUnitClauses = new HashSet<>();
-        clauses.forEach(clause -> {
-            if (clause.getLiterals().size() == 1) {
-                unitClauses.add(clause);
-            } else {
-                nonUnitClauses.add(clause);
-            }
-        });
+    String evaluate(IntList assumptions) {
+        this.assumptions = assumptions;
+        String result = evaluate();
+        this.assumptions = noAssumptions;
+        return result;
+    }
 
-        for (Clause c : unitClauses) {
-            Map<String, Boolean> assignment = graph.getAssignmentForClause(c);
-            if (!assignment.isEmpty()) {
-                continue;
+    public void addClause(int... literals) {
+        // Preprocessing may have removed clauses that the new clause would resolve with
+        if (!db.getReconstructionStack().isEmpty()) {
+            throw new IllegalStateException("Clauses cannot be added after preprocessing removed clauses");
+        }
+        backtrack(0);
+
+        addedClause.clear();
+        for (int literal : literals) {
+            int l = toLiteral(literal);
+            if (contains(addedClause, LiteralUtil.negate(l))) {
+                return;
             }
-            Variable v = c.getImpliedVariable(assignment);
-            if (v == null) {
-                continue;
+            if (!contains(addedClause, l)) {
+                addedClause.add(l);
             }
-            graph.addDecisionNode(v, decisionLevel);
         }
+        int cref = db.insertInputClause(addedClause);
 
-        // For every clause, choose a variable, assign, then check if we can imply / force assignment
-        // on other literals in clauses
-        for (Clause c : nonUnitClauses) {
-            Map<String, Boolean> assignment = graph.getAssignmentForClause(c);
-            // Only can imply if there's only 1 literal unassigned in a clause
-            Variable v = c.getImpliedVariable(assignment);
-            if (v == null) {
-                continue;
+        // Move the literals not false at level 0 to the front, so that they are watched
+        int free = 0;
+        for (int i = 0; i < arena.size(cref); ++i) {
+            if (graph.getValue(arena.literal(cref, i)) != ImplicationGraph.FALSE) {
+                arena.swapLiterals(cref, free++, i);
             }
-            graph.addDecisionNode(v, decisionLevel);
-            if (!implicationPropagation(clauses, v)) {
-                return false;
+        }
+        propagator.attachClause(cref);
+        if (free == 0) {
+            inconsistent = true;
+        } else if (free == 1 && graph.getValue(arena.literal(cref, 0)) == ImplicationGraph.UNASSIGNED) {
+            graph.addImplicationNode(arena.literal(cref, 0), 0, cref);
+            if (!propagate()) {
+                inconsistent = true;
             }
         }
+    }
 
-        return true;
+    public SolveResult solve(int... assumptions) {
+        IntList literals = new IntList(assumptions.length);
+        for (int literal : assumptions) {
+            literals.add(toLiteral(literal));
+        }
+        this.assumptions = literals;
+        SolveResult.Status status = search();
+        this.assumptions = noAssumptions;
+
+        Map<String, Boolean> model = new LinkedHashMap<>();
+        if (status == SolveResult.Status.SAT) {
+            byte[] values = modelValues();
+            for (int v = 0; v < values.length; ++v) {
+                if (values[v] != ImplicationGraph.UNASSIGNED) {
+                    model.put(db.getVariableName(v), values[v] == ImplicationGraph.TRUE);
+                }
+            }
+        }
+        IntList failed = new IntList(failedAssumptions.size());
+        for (int i = 0; i < failedAssumptions.size(); ++i) {
+            for (int k = 0; k < literals.size(); ++k) {
+                if (literals.get(k) == failedAssumptions.get(i)) {
+                    failed.add(assumptions[k]);
+                    break;
+                }
+            }
+        }
+        return new SolveResult(status, model, failed.toArray());
     }
 
     /**
-     * Force to satisfy a clause. Only used for learnt clause.
-     * @param clause learnt clause
-     * @return true
+     * Record the assumptions that made an assumption false: the assumption itself and the decisions it was implied
+     * from, all of which are assumptions.
+     * @param assumption assumption found false
      */
-    boolean forceSatisfyClause(Clause clause) {
-        if (Config.logging == Config.Logging.VERBOSE) {
-            System.out.println(String.format("Forcing clause %s to be true", clause.toString()));
+    private void analyzeFailedAssumption(int assumption) {
+        failedAssumptions.add(assumption);
+        IntList decisions = graph.analyzeFinal(assumption);
+        for (int i = 0; i < decisions.size(); ++i) {
+            failedAssumptions.add(decisions.get(i));
         }
-        Map<String, Boolean> assignment = graph.getAssignmentForClause(clause);
+    }
 
-        List<Literal> unassignedLiterals = new ArrayList<>();
-        for (Literal l : clause.getLiterals()) {
-            if (!assignment.containsKey(l.getName())) {
-                unassignedLiterals.add(l);
-            }
-        }
-        if (unassignedLiterals.size() != 1) {
-            return true;
+    /**
+     * Get the integer encoded literal of a literal in DIMACS notation, adding its variable if it is new.
+     * @param literal literal in DIMACS notation
+     * @return integer encoded literal
+     */
+    private int toLiteral(int literal) {
+        if (literal == 0) {
+            throw new IllegalArgumentException("0 is not a literal");
         }
-        Literal literalToImply = unassignedLiterals.get(0);
-        Variable v = new Variable(literalToImply.getName(), false);
-        assignment.put(literalToImply.getName(), false);
-        if (!clause.isSatisfied(assignment)) {
-            v.setAssignment(true);
+        int l = db.toLiteral(new Literal(String.valueOf(Math.abs(literal)), literal > 0));
+        if (LiteralUtil.getVariable(l) >= graph.getNumberOfVariables()) {
+            growVariables();
         }
-        graph.addImplicationNode(v, decisionLevel, clause);
-        if (Config.logging != Config.Logging.NONE) {
-            for (String k : assignment.keySet()) {
-                System.out.println(String.format("%s: %s", k, assignment.get(k) ? "true" : "false"));
+        return l;
+    }
+
+    /**
+     * Make room in the solver for variables added to the clause database since the last call.
+     */
+    void growVariables() {
+        graph.grow(db.getNumberOfLiterals());
+        propagator.grow(db.getNumberOfLiterals());
+    }
+
+    private static boolean contains(IntList list, int value) {
+        for (int i = 0; i < list.size(); ++i) {
+            if (list.get(i) == value) {
+                return true;
             }
-            System.out.println();
         }
+        return false;
+    }
 
+    /**
+     * Assign eliminated variables and units at decision level 0 and propagate them, then probe for failed literals
+     * the first time the solver is called.
+     * @return false if the CNF is found unsatisfiable, true otherwise
+     */
+    boolean initializeSearch() {
+        assignEliminatedVariables();
+        if (!unitPropagation(db.getClauseReferences())) {
+            return false;
+        }
+        if (prober != null && !probed) {
+            probed = true;
+            boolean satisfiable = prober.probe();
+            incrementStatistic(FAILED_LITERALS_STATISTIC, prober.getFailedLiteralCount());
+            incrementStatistic(PROBING_UNITS_STATISTIC, prober.getUnitCount());
+            return satisfiable;
+        }
         return true;
     }
 
     /**
-     * Check if clause is still satisfiable.
-     * @param clause clause to verify
-     * @return true if clause is satisfiable, false otherwise
+     * Assign variables eliminated by preprocessing at level 0, so that they are never branched on. They occur in no
+     * clause, and their values are set by {@code modelToString}.
      */
-    private boolean checkClauseSatisfiable(Clause clause) {
-        boolean sat = false;
-        for (Literal l : clause.getLiterals()) {
-            Boolean assignment = graph.getAssignment(l.getName());
-            if (assignment == null) {
-                continue;
-            }
-
-            if (l.isSatisfied(assignment)) {
-                sat = true;
-                break;
+    void assignEliminatedVariables() {
+        for (int v = 0; v < db.getNumberOfLiterals(); ++v) {
+            if (db.isEliminated(v)) {
+                graph.addDecisionNode(LiteralUtil.toLiteral(v, false), 0);
             }
         }
-        return sat;
     }
 
     /**
-     * Perform implication propagation, which is to continuously imply / force variables to be a certain
-     * assignment if there is only one unassigned variable in a clause. If there exists a conflict,
-     * {@code conflictedClause}, {@code conflictedDecisionLevel} and {@code conflictedVariable} will be
-     * set.
-     * @param clauses clauses in CNF
-     * @param decision last decision made
-     * @return true if variables can be implied with no conflicts, false otherwise
+     * Return the model of the original CNF in string, restoring the values of variables removed by preprocessing and
+     * leaving out the variables it added.
+     * @return result of variable assignments in string
      */
-    boolean implicationPropagation(Set<Clause> clauses, Variable decision) {
-        Clause conflicted = graph.getConflictedClause(clauses);
-        if (conflicted != null) {
-            conflictedClause = conflicted;
-            conflictedDecisionLevel = decisionLevel;
-            conflictedVariable = decision;
-            return false;
+    String modelToString() {
+        if (db.getReconstructionStack().isEmpty() && !db.hasAuxiliaryVariables()) {
+            return graph.assignmentsToString();
         }
+        return graph.assignmentsToString(modelValues());
+    }
 
-        for (Clause c : clauses) {
-            // Clause do not contain the literal which we just assigned, continue
-            Literal l = c.getLiteral(decision.getName());
-            if (l == null) {
-                continue;
+    /**
+     * Get the model of the original CNF, restoring the values of variables removed by preprocessing. Variables added
+     * by preprocessing are left unassigned.
+     * @return value of each variable
+     */
+    byte[] modelValues() {
+        byte[] values = graph.getAssignments();
+        db.getReconstructionStack().extend(values);
+        for (int v = 0; v < values.length; ++v) {
+            if (db.isAuxiliary(v)) {
+                values[v] = ImplicationGraph.UNASSIGNED;
             }
+        }
+        return values;
+    }
 
-            Boolean assignment = graph.getAssignment(decision.getName());
-            if (assignment == null) {
+    /**
+     * Perform unit propagation, which checks if there are variables that can be assigned / implied due
+     * to several reasons such as:
+     * 1. It is a unit clause
+     * 2. There is only 1 unassigned variable in the clause
+     * @param clauses references of clauses in CNF
+     * @return true if there are no conflicts after propagation, false otherwise
+     */
+    boolean unitPropagation(IntList clauses) {
+        for (int i = 0; i < clauses.size(); ++i) {
+            int cref = clauses.get(i);
+            int size = arena.size(cref);
+            if (size == 0) {
+                return false;
+            }
+            // Clauses with more than 1 literal are watched by the propagator
+            if (size != 1) {
                 continue;
             }
-
-//            List<Literal> literalsWithoutAssignment = new ArrayList<>();
-//
-//            c.getLiterals().forEach(lit -> {
-//                if (graph.getAssignment(lit.getName()) == null) {
-//                    literalsWithoutAssignment.add(lit);
-//                }
-//            });
-//
-//
-//            // If there is only 1 left, we can force the value, else continue
-//            if (literalsWithoutAssignment.size() != 1) {
-//                continue;
-//            }
-//
-//            Literal lit = literalsWithoutAssignment.get(0);
-//            boolean sat = checkClauseSatisfiable(c);
-//            if (sat) {
-//                continue;
-//            }
-//            boolean assign = lit.isPositive();
-//            Variable impliedVariable = new Variable(lit.getName(), assign);
-            Map<String, Boolean> clauseAssignment = graph.getAssignmentForClause(c);
-            Variable impliedVariable = c.getImpliedVariable(clauseAssignment);
-            if (impliedVariable == null) {
+            int literal = arena.literal(cref, 0);
+            byte value = graph.getValue(literal);
+            if (value == ImplicationGraph.FALSE) {
+                return false;
+            }
+            if (value == ImplicationGraph.TRUE) {
                 continue;
             }
-            graph.addImplicationNode(impliedVariable, decisionLevel, c);
+            graph.addDecisionNode(literal, decisionLevel);
+        }
 
-            // Recursively check until we cannot imply / force any other values
-            if (!implicationPropagation(clauses, impliedVariable)) {
-                return false;
+        return propagate();
+    }
+
+    /**
+     * Force to satisfy a clause. Only used for learnt clause.
+     * @param clause reference of learnt clause
+     * @return true
+     */
+    boolean forceSatisfyClause(int clause) {
+        if (Config.logging == Config.Logging.DEBUG) {
+            System.out.println(String.format("Forcing clause %s to be true", graph.clauseToString(clause)));
+        }
+
+        int unassignedCount = 0;
+        int literalToImply = LiteralUtil.UNDEFINED;
+        for (int i = 0; i < arena.size(clause); ++i) {
+            int l = arena.literal(clause, i);
+            if (graph.getValue(l) == ImplicationGraph.UNASSIGNED) {
+                ++unassignedCount;
+                literalToImply = l;
             }
         }
+        propagator.attachLearntClause(clause);
+        if (unassignedCount != 1) {
+            return true;
+        }
+        graph.addImplicationNode(literalToImply, decisionLevel, clause);
+        if (Config.logging == Config.Logging.DEBUG) {
+            for (int i = 0; i < arena.size(clause); ++i) {
+                int l = arena.literal(clause, i);
+                boolean assignment = LiteralUtil.isPositive(l) == (graph.getValue(l) == ImplicationGraph.TRUE);
+                System.out.println(String.format("%s: %s",
+                        db.getVariableName(LiteralUtil.getVariable(l)), assignment ? "true" : "false"));
+            }
+            System.out.println();
+        }
 
         return true;
     }
 
+    /**
+     * Propagate all assignments on the trail that are not propagated yet through the watched literals.
+     * @return true if there are no conflicts after propagation, false otherwise
+     */
+    boolean propagate() {
+        int conflict = propagator.propagate(decisionLevel);
+        if (conflict == ClauseArena.NO_CLAUSE) {
+            return true;
+        }
+        conflictedClause = conflict;
+        conflictedLiteral = propagator.getConflictedLiteral();
+        conflictedDecisionLevel = decisionLevel;
+        return false;
+    }
+
     /**
      * Picks an unassigned variable.
-     * @return unassigned variable
+     * @return literal of the unassigned variable to branch on
      */
-    Variable pickBranchingVariable() {
+    int pickBranchingVariable() {
         super.pickBranchingVariable();
         return graph.getNextUnassignedVariable(false);
     }
@@ -303,28 +585,184 @@ public class CDCLSolver extends Solver {
      * @return level to backtrack to
      */
     int conflictAnalysis() {
-        if (conflictedClause == null) {
-            throw new NullPointerException("conflictedClause is null");
+        if (conflictedClause == ClauseArena.NO_CLAUSE) {
+            throw new IllegalStateException("conflictedClause is not set");
         }
 
-        Clause learntClause = graph.analyzeConflict(conflictedClause, conflictedVariable, conflictedDecisionLevel);
+        IntList learntClause = graph.analyzeConflict(conflictedClause, conflictedDecisionLevel);
 
-        if (Config.logging != Config.Logging.NONE) {
-            System.out.println("Learnt clause: " + learntClause.toString());
-            System.out.println("Backtrack to: " + graph.getBacktrackLevel());
+        if (graph.getBacktrackLevel() == -1) {
+            return -1;
         }
 
-        addLearntClause(learntClause);
+        ++conflicts;
+        incrementStatistic(CONFLICTS_STATISTIC, 1);
+        if (restartPolicy != null) {
+            restartPolicy.onConflict(graph.getLbd());
+        }
+        if (exchange != null) {
+            countUsedImports();
+        }
+        reducer.onConflict();
+        if (Config.phase == Config.Phase.REPHASING && conflicts >= nextRephase) {
+            rephase();
+        }
+
+        incrementStatistic(LEARNT_LITERALS_STATISTIC, graph.getLearntLiteralCount());
+        incrementStatistic(MINIMIZED_LITERALS_STATISTIC, graph.getMinimizedLiteralCount());
+
+        int cref = addLearntClause(learntClause);
+        if (exchange != null && exchange.export(worker, learntClause, graph.getLbd())) {
+            incrementStatistic(EXPORTED_CLAUSES_STATISTIC, 1);
+        }
+
+        if (Config.logging == Config.Logging.DEBUG) {
+            System.out.println("Learnt clause: " + graph.clauseToString(cref));
+            System.out.println("Backtrack to: " + graph.getBacktrackLevel());
+        }
 
         return graph.getBacktrackLevel();
     }
 
+    /**
+     * Share learnt clauses with solvers running in parallel on copies of the same CNF. Learnt clauses that pass the
+     * filters of the exchange are published, and the clauses of the other solvers are imported at decision level 0.
+     * @param exchange clause exchange
+     * @param worker index of this solver in the exchange
+     */
+    public void setClauseExchange(ClauseExchange exchange, int worker) {
+        this.exchange = exchange;
+        this.worker = worker;
+        importedClause = new IntList();
+        registerStatistic(EXPORTED_CLAUSES_STATISTIC);
+        registerStatistic(IMPORTED_CLAUSES_STATISTIC);
+        registerStatistic(USED_IMPORTED_CLAUSES_STATISTIC);
+    }
+
+    /**
+     * Add the clauses published by the other solvers since the last import as learnt clauses, without their literals
+     * false at level 0. Must be called at decision level 0 with all assignments propagated.
+     * @return false if the CNF is found unsatisfiable, true otherwise
+     */
+    boolean importClauses() {
+        importConflict = false;
+        exchange.importClauses(worker, this::importClause);
+        return !importConflict && propagate();
+    }
+
+    private void importClause(int[] literals, int lbd) {
+        importedClause.clear();
+        for (int literal : literals) {
+            byte value = graph.getValue(literal);
+            if (value == ImplicationGraph.TRUE) {
+                return;
+            }
+            if (value == ImplicationGraph.UNASSIGNED) {
+                importedClause.add(literal);
+            }
+        }
+        if (importedClause.isEmpty()) {
+            importConflict = true;
+            return;
+        }
+
+        int cref = db.insertLearntClause(importedClause, Math.min(lbd, importedClause.size()));
+        db.clearLastLearntClause();
+        arena.setImported(cref, true);
+        if (importedClause.size() == 1) {
+            graph.addImplicationNode(importedClause.get(0), 0, cref);
+        } else {
+            propagator.attachClause(cref);
+        }
+        incrementStatistic(IMPORTED_CLAUSES_STATISTIC, 1);
+    }
+
+    /**
+     * Count the imported clauses used by the last conflict analysis for the first time.
+     */
+    private void countUsedImports() {
+        IntList used = graph.getAnalyzedLearntClauses();
+        for (int i = 0; i < used.size(); ++i) {
+            int cref = used.get(i);
+            if (arena.isImported(cref)) {
+                arena.setImported(cref, false);
+                incrementStatistic(USED_IMPORTED_CLAUSES_STATISTIC, 1);
+            }
+        }
+    }
+
+    /**
+     * Backtrack to decision level 0. Learnt clauses, activities and saved phases are kept.
+     */
+    void restart() {
+        if (Config.logging == Config.Logging.DEBUG) {
+            System.out.println("Restart");
+        }
+        backtrack(0);
+        restartPolicy.onRestart();
+        incrementStatistic(RESTARTS_STATISTIC, 1);
+    }
+
+    /**
+     * Delete learnt clauses and update the clause references held by the solver.
+     */
+    void reduceLearntClauses() {
+        int deleted = reducer.reduce();
+        removeDeletedClauses();
+        incrementStatistic(REDUCTIONS_STATISTIC, 1);
+        incrementStatistic(DELETED_CLAUSES_STATISTIC, deleted);
+        if (Config.logging == Config.Logging.DEBUG) {
+            System.out.println(String.format("Deleted %d learnt clauses", deleted));
+        }
+    }
+
+    /**
+     * Delete learnt clauses subsumed by other learnt clauses, keeping the reasons of assignments.
+     */
+    void subsumeLearntClauses() {
+        int deleted = subsumer.subsumeLearntClauses(graph::isReason);
+        removeDeletedClauses();
+        nextSubsumption = conflicts + SUBSUMPTION_INTERVAL;
+        incrementStatistic(SUBSUMED_CLAUSES_STATISTIC, deleted);
+    }
+
+    /**
+     * Remove clauses marked as deleted from the database and update the clause references held by the solver.
+     */
+    void removeDeletedClauses() {
+        db.removeDeletedClauses();
+        propagator.relocate();
+        graph.relocateReasons();
+    }
+
+    private RestartPolicy createRestartPolicy() {
+        switch (Config.restart) {
+            case LUBY:
+                return new LubyRestartPolicy();
+            case GLUCOSE:
+                return new GlucoseRestartPolicy();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Overwrite the saved phases with the next kind of rephasing in the schedule.
+     */
+    private void rephase() {
+        graph.rephase(REPHASE_SCHEDULE[rephases % REPHASE_SCHEDULE.length]);
+        ++rephases;
+        nextRephase = conflicts + (long) REPHASE_INTERVAL * (rephases + 1);
+        incrementStatistic(REPHASES_STATISTIC, 1);
+    }
+
     /**
      * Insert learnt clause into DB.
-     * @param learntClause learnt clause
+     * @param learntClause literals of learnt clause
+     * @return reference of the learnt clause
      */
-    void addLearntClause(Clause learntClause) {
-        db.insertLearntClause(learntClause);
+    int addLearntClause(IntList learntClause) {
+        return db.insertLearntClause(learntClause, graph.getLbd());
     }
 
     /**
@@ -333,6 +771,7 @@ public class CDCLSolver extends Solver {
      */
     void backtrack(int level) {
         graph.revertToDecisionLevel(level);
+        propagator.backtrack();
         decisionLevel = level;
     }
 
@@ -344,14 +783,32 @@ public class CDCLSolver extends Solver {
         return graph.allVariablesAssigned(db.getNumberOfLiterals());
     }
 
+    String literalToString(int literal) {
+        return String.format("%s %s", db.getVariableName(LiteralUtil.getVariable(literal)),
+                LiteralUtil.isPositive(literal));
+    }
+
     public void reset() {
         super.reset();
+        db.clearLearntClauses();
         graph.reset();
-        graph.initialize(db.getAllClauses());
+        graph.initialize(arena, db.getVariableNames());
         decisionLevel = 0;
         conflictedDecisionLevel = -1;
-        conflictedVariable = null;
-        conflictedClause = null;
-        db.clearLearntClauses();
+        conflictedLiteral = LiteralUtil.UNDEFINED;
+        conflictedClause = ClauseArena.NO_CLAUSE;
+        conflicts = 0;
+        rephases = 0;
+        nextRephase = REPHASE_INTERVAL;
+        nextSubsumption = SUBSUMPTION_INTERVAL;
+        probed = false;
+        inconsistent = false;
+        failedAssumptions.clear();
+        if (restartPolicy != null) {
+            restartPolicy.reset();
+        }
+        reducer.reset();
+        propagator.reset();
+        propagator.initialize(db.getClauseReferences());
     }
 }
@@ -0,0 +1,211 @@
+package solver;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import config.Config;
+import datastruct.IntList;
+import db.ClauseDB;
+
+/**
+ * Cube-and-conquer: a lookahead pass splits the CNF into cubes, and the cubes are solved in parallel on a fork-join
+ * pool. Every pool thread keeps one solver on its own copy of the clause database and solves its cubes as
+ * assumptions, so the clauses it learns carry over from one cube to the next. The CNF is unsatisfiable if every cube
+ * is, and once a cube is satisfiable the remaining cubes are skipped and the running solvers interrupted.
+ * <p>
+ * Statistics of all solvers are added up, together with the number of cubes and how many were solved.
+ */
+public class CubeAndConquerSolver extends OutputSolver {
+    static final String CUBES_STATISTIC = "Cubes";
+    static final String SOLVED_CUBES_STATISTIC = "Solved cubes";
+    static final String REFUTED_CUBES_STATISTIC = "Cubes refuted by lookahead";
+
+    /**
+     * Cube depth beyond the number of levels needed for one cube per thread, so that work stealing can balance
+     * cubes of different difficulty.
+     */
+    private static final int EXTRA_DEPTH = 4;
+
+    /**
+     * Number of progress reports per evaluation in verbose logging.
+     */
+    private static final int PROGRESS_STEPS = 10;
+
+    private ClauseDB db;
+    private CDCLSolver lookaheadSolver;
+    private LookaheadSplitter splitter;
+    private int parallelism;
+
+    /**
+     * Solvers created by the pool threads in the current evaluation.
+     */
+    private Queue<CDCLSolver> workers;
+    private ThreadLocal<CDCLSolver> worker;
+
+    private List<int[]> cubes;
+    private AtomicInteger solvedCount;
+    private AtomicReference<String> model;
+
+    private int pickBranchingVariableCount;
+    private Map<String, Long> statistics;
+
+    public CubeAndConquerSolver(ClauseDB db) {
+        this.db = db;
+        lookaheadSolver = new CDCLSolver(new ClauseDB(db));
+        parallelism = Runtime.getRuntime().availableProcessors();
+        workers = new ConcurrentLinkedQueue<>();
+        solvedCount = new AtomicInteger();
+        model = new AtomicReference<>();
+        statistics = new LinkedHashMap<>();
+        statistics.put(CUBES_STATISTIC, 0L);
+        statistics.put(SOLVED_CUBES_STATISTIC, 0L);
+        statistics.put(REFUTED_CUBES_STATISTIC, 0L);
+        lookaheadSolver.getStatistics().keySet().forEach(name -> statistics.put(name, 0L));
+    }
+
+    public String evaluate() {
+        if (!lookaheadSolver.initializeSearch()) {
+            return Solver.UNSAT;
+        }
+        if (splitter == null) {
+            splitter = new LookaheadSplitter(lookaheadSolver);
+        }
+        cubes = splitter.split(cubeDepth());
+        statistics.put(CUBES_STATISTIC, (long) cubes.size());
+        statistics.put(REFUTED_CUBES_STATISTIC, (long) splitter.getRefutedCount());
+        if (Config.logging == Config.Logging.VERBOSE) {
+            System.out.println(String.format("Split into %d cubes, %d refuted by lookahead", cubes.size(),
+                    splitter.getRefutedCount()));
+        }
+
+        worker = ThreadLocal.withInitial(() -> {
+            CDCLSolver solver = new VSDISSolver(new ClauseDB(db));
+            workers.add(solver);
+            return solver;
+        });
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new CubeTask(0, cubes.size()));
+        } finally {
+            pool.shutdown();
+        }
+
+        collectStatistics();
+        String result = model.get();
+        return result == null ? Solver.UNSAT : result;
+    }
+
+    public int getPickBranchingVariableCount() {
+        return pickBranchingVariableCount;
+    }
+
+    /**
+     * Get number of bytes used by the clauses of the lookahead solver and the workers of the last evaluation.
+     * @return number of bytes
+     */
+    public long getUsedBytes() {
+        long usedBytes = lookaheadSolver.getUsedBytes();
+        for (CDCLSolver solver : workers) {
+            usedBytes += solver.getUsedBytes();
+        }
+        return usedBytes;
+    }
+
+    public Map<String, Long> getStatistics() {
+        return statistics;
+    }
+
+    public void reset() {
+        lookaheadSolver.reset();
+        workers.clear();
+        solvedCount.set(0);
+        model.set(null);
+        pickBranchingVariableCount = 0;
+        statistics.replaceAll((name, value) -> 0L);
+    }
+
+    public void interrupt() {
+        model.compareAndSet(null, Solver.UNKNOWN);
+        workers.forEach(CDCLSolver::interrupt);
+    }
+
+    /**
+     * Depth of the split, from {@code Config.cubeDepth} or enough levels for a few cubes per thread.
+     * @return most literals in a cube
+     */
+    private int cubeDepth() {
+        if (Config.cubeDepth > 0) {
+            return Config.cubeDepth;
+        }
+        return 32 - Integer.numberOfLeadingZeros(parallelism - 1) + EXTRA_DEPTH;
+    }
+
+    private void collectStatistics() {
+        statistics.put(SOLVED_CUBES_STATISTIC, (long) solvedCount.get());
+        pickBranchingVariableCount = 0;
+        for (CDCLSolver solver : workers) {
+            pickBranchingVariableCount += solver.getPickBranchingVariableCount();
+            solver.getStatistics().forEach((name, value) -> statistics.merge(name, value, Long::sum));
+        }
+    }
+
+    /**
+     * Solve one cube on the solver of the current thread.
+     * @param cube literals of the cube
+     */
+    private void solveCube(int[] cube) {
+        if (model.get() != null) {
+            return;
+        }
+        IntList assumptions = new IntList(cube.length);
+        for (int literal : cube) {
+            assumptions.add(literal);
+        }
+        String result = worker.get().evaluate(assumptions);
+        if (result.equals(Solver.UNKNOWN)) {
+            return;
+        }
+        int solved = solvedCount.incrementAndGet();
+        if (!result.equals(Solver.UNSAT) && model.compareAndSet(null, result)) {
+            workers.forEach(CDCLSolver::interrupt);
+        }
+        if (Config.logging == Config.Logging.VERBOSE
+                && solved % Math.max(cubes.size() / PROGRESS_STEPS, 1) == 0) {
+            System.out.println(String.format("Cubes solved: %d/%d", solved, cubes.size()));
+        }
+    }
+
+    /**
+     * Solves a range of cubes, splitting it in halves for other threads to steal.
+     */
+    private class CubeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private int from;
+        private int to;
+
+        CubeTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CubeTask(from, middle), new CubeTask(middle, to));
+                return;
+            }
+            if (from < to) {
+                solveCube(cubes.get(from));
+            }
+        }
+    }
+}
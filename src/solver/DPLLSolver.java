@@ -6,9 +6,12 @@ import java.util.Set;
 import java.util.Stack;
 
 import datastruct.Clause;
+import datastruct.IntList;
+import datastruct.Literal;
 import datastruct.Pair;
 import datastruct.Variable;
 import db.ClauseDB;
+import util.LiteralUtil;
 
 public class DPLLSolver extends Solver {
 
@@ -33,22 +36,24 @@ public class DPLLSolver extends Solver {
     }
 
     public String evaluate() {
-        if (!unitPropagation(db.getAllClauses())) {
+        if (!unitPropagation(db.getClauseReferences())) {
             return UNSAT;
         }
 
         while (!allVariablesAssigned()) {
-            Variable decision = pickBranchingVariable();
-            if (decision == null) {
+            int literal = pickBranchingVariable();
+            if (literal == LiteralUtil.UNDEFINED) {
                 return UNSAT;
             }
+            Variable decision = new Variable(db.getVariableName(LiteralUtil.getVariable(literal)),
+                    LiteralUtil.isPositive(literal));
 
             decisionLevel += 1;
 
             unassignedVariables.remove(decision.getName());
             assignedVariables.put(decision.getName(), decision.getAssignment());
 
-            if (unitPropagation(db.getAllClauses())) {
+            if (unitPropagation(db.getClauseReferences())) {
                 assignmentTree.push(new Pair<>(decision.getName(), decision.getAssignment()));
                 continue;
             }
@@ -56,7 +61,7 @@ public class DPLLSolver extends Solver {
             decision.setAssignment(false);
             assignedVariables.replace(decision.getName(), decision.getAssignment());
 
-            if (unitPropagation(db.getAllClauses())) {
+            if (unitPropagation(db.getClauseReferences())) {
                 assignmentTree.push(new Pair<>(decision.getName(), decision.getAssignment()));
                 continue;
             }
@@ -72,18 +77,18 @@ public class DPLLSolver extends Solver {
         return null;
     }
 
-    boolean unitPropagation(Set<Clause> clauses) {
+    boolean unitPropagation(IntList clauses) {
 
         return false;
     }
 
-    Variable pickBranchingVariable() {
+    int pickBranchingVariable() {
         if (unassignedVariables.isEmpty()) {
-            return null;
+            return LiteralUtil.UNDEFINED;
         }
         String[] vars = new String[unassignedVariables.size()];
         unassignedVariables.toArray(vars);
-        return new Variable(vars[0], true);
+        return db.toLiteral(new Literal(vars[0], true));
     }
 
     /**
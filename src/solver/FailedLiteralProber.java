@@ -0,0 +1,165 @@
+package solver;
+
+import datastruct.ImplicationGraph;
+import datastruct.IntList;
+import db.ClauseDB;
+import util.LiteralUtil;
+
+/**
+ * Failed literal probing at decision level 0. Both literals of a variable are assigned in turn at level 1 and
+ * propagated. If one of them leads to a conflict, its negation holds in every model; if both imply the same
+ * literal, that literal holds in every model. Such literals are learnt as unit clauses. Only variables that occur in
+ * binary clauses are probed, since those are the ones whose assignment reaches far through propagation.
+ */
+class FailedLiteralProber {
+
+    private CDCLSolver solver;
+    private ClauseDB db;
+    private ImplicationGraph graph;
+
+    /**
+     * Literal implied by the first probe of the current variable, indexed by variable, valid where the stamp of the
+     * variable is the current stamp.
+     */
+    private int[] implied;
+    private int[] stamps;
+    private int stamp;
+
+    private IntList units;
+    private IntList unitClause;
+    private IntList lemma;
+
+    private int failedLiteralCount;
+    private int unitCount;
+
+    FailedLiteralProber(CDCLSolver solver) {
+        this.solver = solver;
+        this.db = solver.db;
+        this.graph = solver.graph;
+        implied = new int[db.getNumberOfLiterals()];
+        stamps = new int[db.getNumberOfLiterals()];
+        stamp = 0;
+        units = new IntList();
+        unitClause = new IntList(1);
+        lemma = new IntList(2);
+    }
+
+    /**
+     * Probe every unassigned variable that occurs in a binary clause. Must be called at decision level 0 with all
+     * assignments propagated.
+     * @return false if the CNF is found unsatisfiable, true otherwise
+     */
+    boolean probe() {
+        failedLiteralCount = 0;
+        unitCount = 0;
+        if (implied.length < db.getNumberOfLiterals()) {
+            implied = new int[db.getNumberOfLiterals()];
+            stamps = new int[db.getNumberOfLiterals()];
+            stamp = 0;
+        }
+        IntList binaryCounts = db.getTwoClauseLiteralCounts();
+        for (int v = 0; v < db.getNumberOfLiterals(); ++v) {
+            if (graph.isAssigned(v) || db.isEliminated(v) || binaryCounts.get(v) == 0) {
+                continue;
+            }
+            if (!probeVariable(v)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int getFailedLiteralCount() {
+        return failedLiteralCount;
+    }
+
+    /**
+     * Get number of literals learnt because both literals of a variable imply them.
+     * @return number of literals
+     */
+    int getUnitCount() {
+        return unitCount;
+    }
+
+    private boolean probeVariable(int variable) {
+        int positive = LiteralUtil.toLiteral(variable, true);
+        int negative = LiteralUtil.toLiteral(variable, false);
+
+        ++stamp;
+        int start = graph.getTrailSize();
+        if (!assume(positive)) {
+            ++failedLiteralCount;
+            return learnUnit(negative);
+        }
+        for (int i = start; i < graph.getTrailSize(); ++i) {
+            int literal = graph.getTrailLiteral(i);
+            implied[LiteralUtil.getVariable(literal)] = literal;
+            stamps[LiteralUtil.getVariable(literal)] = stamp;
+        }
+        solver.backtrack(0);
+
+        if (!assume(negative)) {
+            ++failedLiteralCount;
+            return learnUnit(positive);
+        }
+        units.clear();
+        for (int i = start; i < graph.getTrailSize(); ++i) {
+            int literal = graph.getTrailLiteral(i);
+            int other = LiteralUtil.getVariable(literal);
+            if (stamps[other] == stamp && implied[other] == literal) {
+                units.add(literal);
+            }
+        }
+        solver.backtrack(0);
+
+        for (int i = 0; i < units.size(); ++i) {
+            ++unitCount;
+            // Both probes imply the unit. A proof checker derives it by propagation once it has the clause of the
+            // negative probe
+            lemma.clear();
+            lemma.add(positive);
+            lemma.add(units.get(i));
+            db.writeProofClause(lemma, false);
+            boolean satisfiable = learnUnit(units.get(i));
+            db.writeProofClause(lemma, true);
+            if (!satisfiable) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Assign a literal at decision level 1 and propagate it. The solver stays at level 1 unless there is a conflict,
+     * in which case it is back at level 0.
+     * @param literal literal to assign
+     * @return false if propagation leads to a conflict, true otherwise
+     */
+    private boolean assume(int literal) {
+        solver.decisionLevel = 1;
+        graph.addDecisionNode(literal, 1);
+        if (solver.propagate()) {
+            return true;
+        }
+        solver.backtrack(0);
+        return false;
+    }
+
+    /**
+     * Learn a unit clause at decision level 0 and propagate it.
+     * @param literal literal of the unit clause
+     * @return false if the CNF is found unsatisfiable, true otherwise
+     */
+    private boolean learnUnit(int literal) {
+        byte value = graph.getValue(literal);
+        if (value != ImplicationGraph.UNASSIGNED) {
+            return value == ImplicationGraph.TRUE;
+        }
+        unitClause.clear();
+        unitClause.add(literal);
+        int cref = db.insertLearntClause(unitClause, 1);
+        db.clearLastLearntClause();
+        graph.addImplicationNode(literal, 0, cref);
+        return solver.propagate();
+    }
+}
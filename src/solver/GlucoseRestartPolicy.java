@@ -0,0 +1,61 @@
+package solver;
+
+/**
+ * Restarts when the clauses learnt recently are of poor quality compared to all clauses learnt so far, as in
+ * Glucose: when the average literal block distance of the last {@code WINDOW} learnt clauses, scaled by {@code K},
+ * exceeds the average over the whole run.
+ */
+class GlucoseRestartPolicy implements RestartPolicy {
+
+    private static final int WINDOW = 50;
+    private static final double K = 0.8;
+
+    /**
+     * Ring buffer of the literal block distances of the last learnt clauses since the last restart.
+     */
+    private int[] recent;
+    private int recentCount;
+    private int recentHead;
+    private long recentSum;
+
+    private long totalSum;
+    private long totalCount;
+
+    GlucoseRestartPolicy() {
+        recent = new int[WINDOW];
+        reset();
+    }
+
+    public void onConflict(int lbd) {
+        totalSum += lbd;
+        ++totalCount;
+
+        if (recentCount == WINDOW) {
+            recentSum -= recent[recentHead];
+        } else {
+            ++recentCount;
+        }
+        recent[recentHead] = lbd;
+        recentSum += lbd;
+        recentHead = (recentHead + 1) % WINDOW;
+    }
+
+    public boolean shouldRestart() {
+        if (recentCount < WINDOW) {
+            return false;
+        }
+        return (double) recentSum / WINDOW * K > (double) totalSum / totalCount;
+    }
+
+    public void onRestart() {
+        recentCount = 0;
+        recentHead = 0;
+        recentSum = 0;
+    }
+
+    public void reset() {
+        onRestart();
+        totalSum = 0;
+        totalCount = 0;
+    }
+}
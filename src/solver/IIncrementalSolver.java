@@ -0,0 +1,26 @@
+package solver;
+
+/**
+ * Solver for a sequence of related queries. Clauses can be added between calls, and each call can assume literals
+ * true for that call only. Learnt clauses, activities and saved phases carry over from one call to the next.
+ * Literals are in DIMACS notation: variable {@code n} is the variable named {@code n}, and {@code -n} is its negation.
+ */
+public interface IIncrementalSolver extends ISolver {
+    /**
+     * Add a clause to the CNF. Variables not seen before are added. Clauses cannot be added once preprocessing has
+     * eliminated variables, substituted equivalent literals or removed blocked clauses, since the new clause could
+     * resolve with the clauses that were removed.
+     * @param literals literals of the clause
+     * @throws IllegalArgumentException if a literal is 0
+     * @throws IllegalStateException if preprocessing removed clauses of the CNF
+     */
+    void addClause(int... literals);
+
+    /**
+     * Solve the CNF with literals assumed true for this call only.
+     * @param assumptions literals assumed true
+     * @return result holding the model, or the failed assumptions
+     * @throws IllegalArgumentException if an assumption is 0
+     */
+    SolveResult solve(int... assumptions);
+}
@@ -1,12 +1,22 @@
 package solver;
 
 import java.io.IOException;
+import java.util.Map;
 
 public interface ISolver {
     String evaluate();
 
     int getPickBranchingVariableCount();
 
+    /**
+     * Get number of bytes used by the clauses the solver works on, including learnt clauses. Solvers that run on
+     * copies of the CNF count all copies.
+     * @return number of bytes
+     */
+    long getUsedBytes();
+
+    Map<String, Long> getStatistics();
+
     void setResultOutput(String outputPath) throws IOException;
 
     void setStatisticsOutput(String outputPath) throws IOException;
@@ -18,4 +28,10 @@ public interface ISolver {
     void finalize() throws IOException;
 
     void reset();
+
+    /**
+     * Ask a running {@code evaluate} to stop at its next decision and return {@code UNKNOWN}. May be called from
+     * another thread. The request holds until {@code reset} is called.
+     */
+    void interrupt();
 }
@@ -0,0 +1,133 @@
+package solver;
+
+import java.util.Arrays;
+
+import datastruct.ClauseArena;
+import datastruct.ImplicationGraph;
+import datastruct.IntList;
+import db.ClauseDB;
+
+/**
+ * Bounds the learnt clause database by periodically deleting learnt clauses, in three tiers by literal block
+ * distance (LBD). Core clauses are always kept, tier 2 clauses are kept as long as they take part in conflict
+ * analysis between reductions, and the less active half of the remaining local clauses is deleted at every
+ * reduction. Clauses that are the reason of an assignment are never deleted.
+ */
+class LearntClauseReducer {
+
+    private static final int CORE_LBD = 2;
+    private static final int TIER2_LBD = 6;
+
+    /**
+     * Conflicts before the first reduction. Every later interval is longer by {@code REDUCE_INCREMENT}.
+     */
+    private static final int FIRST_REDUCE = 2000;
+    private static final int REDUCE_INCREMENT = 300;
+
+    private static final float CLAUSE_DECAY = 0.999f;
+    private static final float RESCALE_LIMIT = 1e20f;
+
+    private ClauseDB db;
+    private ClauseArena arena;
+    private ImplicationGraph graph;
+
+    private float increment;
+    private long conflicts;
+    private long nextReduce;
+    private int reductions;
+
+    /**
+     * Reused buffer of the clauses that may be deleted, sorted by activity.
+     */
+    private long[] candidates;
+
+    LearntClauseReducer(ClauseDB db, ImplicationGraph graph) {
+        this.db = db;
+        this.arena = db.getArena();
+        this.graph = graph;
+        candidates = new long[0];
+        reset();
+    }
+
+    /**
+     * Bump the activity of the learnt clauses used by the last conflict analysis, and lower their LBD if the current
+     * assignment shows a smaller one, which can promote them to a better tier.
+     */
+    void onConflict() {
+        IntList used = graph.getAnalyzedLearntClauses();
+        for (int i = 0; i < used.size(); ++i) {
+            int cref = used.get(i);
+            arena.setUsed(cref, true);
+            int lbd = graph.computeLbd(cref);
+            if (lbd < arena.getLbd(cref)) {
+                arena.setLbd(cref, lbd);
+            }
+            bumpClauseActivity(cref);
+        }
+        increment /= CLAUSE_DECAY;
+        ++conflicts;
+    }
+
+    boolean shouldReduce() {
+        return conflicts >= nextReduce;
+    }
+
+    /**
+     * Delete the less active half of the local clauses, together with the tier 2 clauses not used since the last
+     * reduction. Deleted clauses are only marked in the arena, and the caller must remove them from the database and
+     * relocate its references.
+     * @return number of clauses deleted
+     */
+    int reduce() {
+        IntList learnt = db.getLearntClauseReferences();
+        if (candidates.length < learnt.size()) {
+            candidates = new long[learnt.size()];
+        }
+
+        int count = 0;
+        for (int i = 0; i < learnt.size(); ++i) {
+            int cref = learnt.get(i);
+            int lbd = arena.getLbd(cref);
+            boolean used = arena.isUsed(cref);
+            arena.setUsed(cref, false);
+            if (lbd <= CORE_LBD || arena.size(cref) <= 2 || graph.isReason(cref)) {
+                continue;
+            }
+            if (lbd <= TIER2_LBD && used) {
+                continue;
+            }
+            // Sort by activity, which is non-negative so its bits order like the float, then by reference
+            candidates[count++] = ((long) Float.floatToRawIntBits(arena.getActivity(cref)) << 32) | cref;
+        }
+        Arrays.sort(candidates, 0, count);
+
+        int deleted = count / 2;
+        for (int i = 0; i < deleted; ++i) {
+            arena.delete((int) candidates[i]);
+        }
+
+        ++reductions;
+        nextReduce = conflicts + FIRST_REDUCE + (long) REDUCE_INCREMENT * reductions;
+        return deleted;
+    }
+
+    void reset() {
+        increment = 1;
+        conflicts = 0;
+        reductions = 0;
+        nextReduce = FIRST_REDUCE;
+    }
+
+    private void bumpClauseActivity(int cref) {
+        float activity = arena.getActivity(cref) + increment;
+        arena.setActivity(cref, activity);
+        if (activity > RESCALE_LIMIT) {
+            IntList learnt = db.getLearntClauseReferences();
+            for (int i = 0; i < learnt.size(); ++i) {
+                int c = learnt.get(i);
+                arena.setActivity(c, arena.getActivity(c) / RESCALE_LIMIT);
+            }
+            increment /= RESCALE_LIMIT;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import datastruct.ImplicationGraph;
+import datastruct.IntList;
+import db.ClauseDB;
+import util.LiteralUtil;
+
+/**
+ * Splits a CNF into cubes with lookahead. At every node of the split tree, both literals of the candidate variables
+ * are assigned in turn and propagated, and the variable whose two literals imply the most assignments, by the product
+ * of both counts, is split on. Branches refuted by propagation are dropped, since no model lies in them, so the cubes
+ * returned cover every model of the CNF.
+ */
+class LookaheadSplitter {
+
+    /**
+     * Most variables evaluated at one node, taken in order of the number of clauses they occur in.
+     */
+    private static final int CANDIDATE_LIMIT = 50;
+
+    private CDCLSolver solver;
+    private ClauseDB db;
+    private ImplicationGraph graph;
+
+    /**
+     * Variables that occur in clauses, by decreasing number of occurrences.
+     */
+    private IntList candidates;
+    private IntList cube;
+    private List<int[]> cubes;
+    private int refutedCount;
+
+    LookaheadSplitter(CDCLSolver solver) {
+        this.solver = solver;
+        this.db = solver.db;
+        this.graph = solver.graph;
+        cube = new IntList();
+        cubes = new ArrayList<>();
+
+        IntList counts = db.getLiteralCounts();
+        List<Integer> variables = new ArrayList<>();
+        for (int v = 0; v < db.getNumberOfLiterals(); ++v) {
+            if (counts.get(v) > 0 && !db.isEliminated(v)) {
+                variables.add(v);
+            }
+        }
+        variables.sort((first, second) -> Integer.compare(counts.get(second), counts.get(first)));
+        candidates = new IntList(variables.size());
+        for (int v : variables) {
+            candidates.add(v);
+        }
+    }
+
+    /**
+     * Split the CNF into cubes. The solver must be at decision level 0 with all assignments propagated, and is left
+     * there.
+     * @param depth most literals in a cube
+     * @return cubes, as the literals assumed true in each
+     */
+    List<int[]> split(int depth) {
+        cubes.clear();
+        cube.clear();
+        refutedCount = 0;
+        branch(depth);
+        return cubes;
+    }
+
+    /**
+     * Get number of branches dropped by the last split because propagation refuted them.
+     * @return number of refuted branches
+     */
+    int getRefutedCount() {
+        return refutedCount;
+    }
+
+    private void branch(int depth) {
+        int variable = depth == 0 ? LiteralUtil.UNDEFINED : pickVariable();
+        if (variable == LiteralUtil.UNDEFINED) {
+            cubes.add(cube.toArray());
+            return;
+        }
+        int level = cube.size();
+        for (int literal : new int[] {LiteralUtil.toLiteral(variable, true), LiteralUtil.toLiteral(variable, false)}) {
+            if (assume(literal, level + 1) >= 0) {
+                cube.add(literal);
+                branch(depth - 1);
+                cube.removeLast();
+            } else {
+                ++refutedCount;
+            }
+            solver.backtrack(level);
+        }
+    }
+
+    /**
+     * Pick the candidate variable with the best lookahead score. A variable with a refuted literal is picked at
+     * once, since splitting on it drops that branch.
+     * @return variable, or {@code LiteralUtil.UNDEFINED} if all candidates are assigned
+     */
+    private int pickVariable() {
+        int level = cube.size();
+        int best = LiteralUtil.UNDEFINED;
+        long bestScore = -1;
+        int evaluated = 0;
+        for (int i = 0; i < candidates.size() && evaluated < CANDIDATE_LIMIT; ++i) {
+            int variable = candidates.get(i);
+            if (graph.isAssigned(variable)) {
+                continue;
+            }
+            ++evaluated;
+            long positive = assume(LiteralUtil.toLiteral(variable, true), level + 1);
+            solver.backtrack(level);
+            long negative = assume(LiteralUtil.toLiteral(variable, false), level + 1);
+            solver.backtrack(level);
+            if (positive < 0 || negative < 0) {
+                return variable;
+            }
+            long score = (positive + 1) * (negative + 1);
+            if (score > bestScore) {
+                bestScore = score;
+                best = variable;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Decide a literal at a decision level and propagate it. The caller backtracks afterwards.
+     * @param literal literal to decide
+     * @param level decision level of the literal
+     * @return number of assignments made, or -1 if propagation leads to a conflict
+     */
+    private long assume(int literal, int level) {
+        int start = graph.getTrailSize();
+        solver.decisionLevel = level;
+        graph.addDecisionNode(literal, level);
+        if (!solver.propagate()) {
+            return -1;
+        }
+        return graph.getTrailSize() - start;
+    }
+}
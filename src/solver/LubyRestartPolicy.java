@@ -0,0 +1,60 @@
+package solver;
+
+/**
+ * Restarts after a number of conflicts following the Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, ... scaled by a unit
+ * number of conflicts.
+ */
+class LubyRestartPolicy implements RestartPolicy {
+
+    private static final int UNIT = 100;
+
+    private int restarts;
+    private long conflicts;
+    private long limit;
+
+    LubyRestartPolicy() {
+        reset();
+    }
+
+    public void onConflict(int lbd) {
+        ++conflicts;
+    }
+
+    public boolean shouldRestart() {
+        return conflicts >= limit;
+    }
+
+    public void onRestart() {
+        ++restarts;
+        conflicts = 0;
+        limit = UNIT * luby(restarts);
+    }
+
+    public void reset() {
+        restarts = 0;
+        conflicts = 0;
+        limit = UNIT * luby(0);
+    }
+
+    /**
+     * Get an element of the Luby sequence.
+     * @param index 0-based index in the sequence
+     * @return element of the sequence
+     */
+    static long luby(int index) {
+        // Find the finite subsequence that contains the index, and its size
+        long size = 1;
+        int sequence = 0;
+        while (size < index + 1) {
+            ++sequence;
+            size = 2 * size + 1;
+        }
+        long x = index;
+        while (size - 1 != x) {
+            size = (size - 1) >> 1;
+            --sequence;
+            x = x % size;
+        }
+        return 1L << sequence;
+    }
+}
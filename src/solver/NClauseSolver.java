@@ -1,8 +1,6 @@
 package solver;
 
-import java.util.Map;
-
-import datastruct.Variable;
+import datastruct.IntList;
 import db.ClauseDB;
 
 public class NClauseSolver extends CDCLSolver {
@@ -11,9 +9,9 @@ public class NClauseSolver extends CDCLSolver {
     }
 
     @Override
-    protected Variable pickBranchingVariable() {
+    protected int pickBranchingVariable() {
         super.pickBranchingVariable();
-        Map<String, Integer> nClauseLiteralCountMap = db.getLiteralCountMap();
-        return graph.getNextUnassignedVariable(nClauseLiteralCountMap);
+        IntList nClauseLiteralCounts = db.getLiteralCounts();
+        return graph.getNextUnassignedVariable(nClauseLiteralCounts);
     }
 }
@@ -0,0 +1,49 @@
+package solver;
+
+import java.io.IOException;
+
+import callback.CSVLogger;
+import callback.ResultOutput;
+
+/**
+ * Base of the solvers, which writes the result and the statistics of each iteration to the outputs set by the
+ * caller.
+ */
+abstract class OutputSolver implements ISolver {
+    private ResultOutput resultOutput;
+    private CSVLogger logger;
+
+    public void setResultOutput(String outputPath) throws IOException {
+        resultOutput = new ResultOutput(outputPath);
+        resultOutput.initialize();
+    }
+
+    public void setStatisticsOutput(String outputPath) throws IOException {
+        logger = new CSVLogger(outputPath, ",");
+        logger.initialize();
+    }
+
+    public void writeResult(String result) throws IOException {
+        if (resultOutput == null) {
+            return;
+        }
+        resultOutput.write(result);
+    }
+
+    public void logStatistics(String[] data) throws IOException {
+        if (logger == null) {
+            return;
+        }
+        logger.logNext(data);
+    }
+
+    public void finalize() throws IOException {
+        if (resultOutput != null) {
+            resultOutput.close();
+        }
+
+        if (logger != null) {
+            logger.close();
+        }
+    }
+}
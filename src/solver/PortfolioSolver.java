@@ -0,0 +1,182 @@
+package solver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import config.Config;
+import datastruct.ClauseExchange;
+import db.ClauseDB;
+
+/**
+ * Runs the CDCL solvers in parallel on the same CNF, one thread each, and returns the result of the first one to
+ * finish. Every worker solves its own copy of the clause database. Once a worker has an answer the others are
+ * interrupted, and they stop at their next decision.
+ * <p>
+ * Unless disabled with {@code Config.clauseSharing}, the workers share short learnt clauses with low literal block
+ * distance through a {@code ClauseExchange}. Statistics of every worker are reported, prefixed with its solver type,
+ * together with the index of the winning worker.
+ */
+public class PortfolioSolver extends OutputSolver {
+    static final String WINNER_STATISTIC = "Winner";
+    static final String PICK_BRANCHING_VARIABLE_STATISTIC = "Pick branching variable count";
+
+    private static final Config.Solver[] WORKER_TYPES = {
+            Config.Solver.CDCL_Chaff,
+            Config.Solver.CDCL_TwoClause,
+            Config.Solver.CDCL_NClause,
+            Config.Solver.CDCL_Random,
+            Config.Solver.CDCL_VSDIS,
+    };
+
+    private CDCLSolver[] workers;
+    private String[] results;
+
+    /**
+     * Exchange of learnt clauses between the workers, or null if they do not share clauses.
+     */
+    private ClauseExchange exchange;
+    private int winner;
+
+    /**
+     * Statistics of all workers, in the order of the workers.
+     */
+    private Map<String, Long> statistics;
+
+    public PortfolioSolver(ClauseDB db) {
+        workers = new CDCLSolver[WORKER_TYPES.length];
+        exchange = Config.clauseSharing ? new ClauseExchange(workers.length) : null;
+        for (int i = 0; i < workers.length; ++i) {
+            workers[i] = createWorker(WORKER_TYPES[i], new ClauseDB(db));
+            if (exchange != null) {
+                workers[i].setClauseExchange(exchange, i);
+            }
+        }
+        results = new String[workers.length];
+        winner = -1;
+        statistics = new LinkedHashMap<>();
+        collectStatistics();
+    }
+
+    public String evaluate() {
+        ExecutorService executor = Executors.newFixedThreadPool(workers.length);
+        CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+        String result = Solver.UNKNOWN;
+        try {
+            for (int i = 0; i < workers.length; ++i) {
+                int worker = i;
+                completion.submit(() -> {
+                    results[worker] = workers[worker].evaluate();
+                    return worker;
+                });
+            }
+            for (int i = 0; i < workers.length; ++i) {
+                int worker = completion.take().get();
+                if (!results[worker].equals(Solver.UNKNOWN)) {
+                    winner = worker;
+                    result = results[worker];
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Portfolio worker failed", e.getCause());
+        } finally {
+            for (ISolver worker : workers) {
+                worker.interrupt();
+            }
+            shutdown(executor);
+        }
+
+        if (winner != -1 && Config.logging == Config.Logging.VERBOSE) {
+            System.out.println("Portfolio winner: " + WORKER_TYPES[winner]);
+        }
+        collectStatistics();
+        return result;
+    }
+
+    public int getPickBranchingVariableCount() {
+        return winner == -1 ? 0 : workers[winner].getPickBranchingVariableCount();
+    }
+
+    public long getUsedBytes() {
+        long usedBytes = 0;
+        for (ISolver worker : workers) {
+            usedBytes += worker.getUsedBytes();
+        }
+        return usedBytes;
+    }
+
+    public Map<String, Long> getStatistics() {
+        return statistics;
+    }
+
+    public void reset() {
+        for (ISolver worker : workers) {
+            worker.reset();
+        }
+        if (exchange != null) {
+            exchange.clear();
+        }
+        winner = -1;
+        collectStatistics();
+    }
+
+    public void interrupt() {
+        for (ISolver worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    private void collectStatistics() {
+        statistics.put(WINNER_STATISTIC, (long) winner);
+        for (int i = 0; i < workers.length; ++i) {
+            String prefix = WORKER_TYPES[i] + " ";
+            statistics.put(prefix + PICK_BRANCHING_VARIABLE_STATISTIC,
+                    (long) workers[i].getPickBranchingVariableCount());
+            workers[i].getStatistics().forEach((name, value) -> statistics.put(prefix + name, value));
+        }
+    }
+
+    /**
+     * Wait for the interrupted workers to stop, so that their statistics are final and they can be reset.
+     * @param executor executor running the workers
+     */
+    private static void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static CDCLSolver createWorker(Config.Solver type, ClauseDB db) {
+        switch (type) {
+            case CDCL_TwoClause:
+                return new TwoClauseSolver(db);
+            case CDCL_NClause:
+                return new NClauseSolver(db);
+            case CDCL_Random:
+                return new RandomSolver(db);
+            case CDCL_VSDIS:
+                return new VSDISSolver(db);
+            default:
+                return new CDCLSolver(db);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package solver;
+
+import java.util.Arrays;
+
+import datastruct.ClauseArena;
+import datastruct.ImplicationGraph;
+import datastruct.IntList;
+import util.LiteralUtil;
+
+/**
+ * Unit propagation engine based on two watched literals. Every clause with at least two literals watches the first
+ * two literals of its arena entry and is only visited when one of them becomes false, so an assignment only costs
+ * as much as the clauses watching the falsified literal. Binary clauses are kept apart in implication lists and
+ * imply with an inline reason, and all binary implications are propagated before long clauses. The assignment trail
+ * of the implication graph is the propagation queue: literals on the trail from {@code head} onwards are still to be
+ * propagated, so the queue is bounded by the number of variables and never allocates.
+ */
+class Propagator {
+
+    /**
+     * References of clauses watching each literal, indexed by literal. A clause in the list of a literal is visited
+     * when that literal becomes false.
+     */
+    private IntList[] watches;
+
+    /**
+     * Binary clauses containing each literal, indexed by literal. Each clause is stored as a pair of ints: the other
+     * literal of the clause, which is implied when the indexing literal becomes false, and the clause reference.
+     */
+    private IntList[] binaryWatches;
+
+    /**
+     * Trail index of the next assignment to propagate through long clauses, and through binary clauses.
+     */
+    private int head;
+    private int binaryHead;
+
+    private ImplicationGraph graph;
+    private ClauseArena arena;
+
+    private int conflictedClause;
+    private int conflictedLiteral;
+
+    Propagator(ImplicationGraph graph, ClauseArena arena, int numberOfVariables) {
+        this.graph = graph;
+        this.arena = arena;
+        watches = new IntList[2 * numberOfVariables];
+        binaryWatches = new IntList[2 * numberOfVariables];
+        for (int i = 0; i < watches.length; ++i) {
+            watches[i] = new IntList(4);
+            binaryWatches[i] = new IntList(4);
+        }
+        head = 0;
+        binaryHead = 0;
+        conflictedClause = ClauseArena.NO_CLAUSE;
+        conflictedLiteral = LiteralUtil.UNDEFINED;
+    }
+
+    /**
+     * Make room for variables added after construction.
+     * @param numberOfVariables number of variables
+     */
+    void grow(int numberOfVariables) {
+        int size = watches.length;
+        if (2 * numberOfVariables <= size) {
+            return;
+        }
+        watches = Arrays.copyOf(watches, 2 * numberOfVariables);
+        binaryWatches = Arrays.copyOf(binaryWatches, 2 * numberOfVariables);
+        for (int i = size; i < watches.length; ++i) {
+            watches[i] = new IntList(4);
+            binaryWatches[i] = new IntList(4);
+        }
+    }
+
+    /**
+     * Attach clauses to the watch lists. Clauses with less than two literals are not watched and must be handled
+     * by the caller.
+     * @param clauses clause references to attach
+     */
+    void initialize(IntList clauses) {
+        for (int i = 0; i < clauses.size(); ++i) {
+            attachClause(clauses.get(i));
+        }
+    }
+
+    /**
+     * Watch the first two literals of a clause, or add a binary clause to the implication lists.
+     * @param cref clause reference
+     */
+    void attachClause(int cref) {
+        if (arena.size(cref) < 2) {
+            return;
+        }
+        if (arena.size(cref) == 2) {
+            int first = arena.literal(cref, 0);
+            int second = arena.literal(cref, 1);
+            binaryWatches[first].add(second);
+            binaryWatches[first].add(cref);
+            binaryWatches[second].add(first);
+            binaryWatches[second].add(cref);
+            return;
+        }
+        watches[arena.literal(cref, 0)].add(cref);
+        watches[arena.literal(cref, 1)].add(cref);
+    }
+
+    /**
+     * Attach a learnt clause after backtracking. The literal that is not false is watched together with the false
+     * literal of the highest decision level, so the clause is visited again as soon as backtracking unassigns it.
+     * @param cref reference of the learnt clause
+     */
+    void attachLearntClause(int cref) {
+        int size = arena.size(cref);
+        if (size < 2) {
+            return;
+        }
+        for (int i = 0; i < size; ++i) {
+            if (graph.getValue(arena.literal(cref, i)) != ImplicationGraph.FALSE) {
+                arena.swapLiterals(cref, 0, i);
+                break;
+            }
+        }
+        int highest = 1;
+        for (int i = 2; i < size; ++i) {
+            if (levelOf(arena.literal(cref, i)) > levelOf(arena.literal(cref, highest))) {
+                highest = i;
+            }
+        }
+        arena.swapLiterals(cref, 1, highest);
+        attachClause(cref);
+    }
+
+    /**
+     * Propagate all assignments on the trail that are not propagated yet, until no more variables can be implied or
+     * a conflict is found. Stops at the first conflict and skips the rest of the queue, since backtracking undoes
+     * those assignments.
+     * @param decisionLevel decision level of the implications
+     * @return reference of the conflicted clause, or {@code ClauseArena.NO_CLAUSE} if there is no conflict
+     */
+    int propagate(int decisionLevel) {
+        conflictedClause = ClauseArena.NO_CLAUSE;
+        conflictedLiteral = LiteralUtil.UNDEFINED;
+
+        while (head < graph.getTrailSize()) {
+            if (!propagateBinary(decisionLevel)) {
+                return conflictedClause;
+            }
+
+            int literal = graph.getTrailLiteral(head++);
+            int falsified = LiteralUtil.negate(literal);
+            IntList watchers = watches[falsified];
+
+            int i = 0;
+            int j = 0;
+            int size = watchers.size();
+            while (i < size) {
+                int cref = watchers.get(i++);
+
+                // Keep the falsified watch at index 1
+                if (arena.literal(cref, 0) == falsified) {
+                    arena.swapLiterals(cref, 0, 1);
+                }
+
+                // Clause already satisfied by the other watch
+                int first = arena.literal(cref, 0);
+                if (graph.getValue(first) == ImplicationGraph.TRUE) {
+                    watchers.set(j++, cref);
+                    continue;
+                }
+
+                // Look for a new literal to watch
+                boolean moved = false;
+                int clauseSize = arena.size(cref);
+                for (int k = 2; k < clauseSize; ++k) {
+                    int candidate = arena.literal(cref, k);
+                    if (graph.getValue(candidate) != ImplicationGraph.FALSE) {
+                        arena.swapLiterals(cref, 1, k);
+                        watches[candidate].add(cref);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+
+                watchers.set(j++, cref);
+
+                // Every literal other than the first watch is false
+                if (graph.getValue(first) == ImplicationGraph.FALSE) {
+                    conflictedClause = cref;
+                    conflictedLiteral = literal;
+                    while (i < size) {
+                        watchers.set(j++, watchers.get(i++));
+                    }
+                    watchers.shrink(j);
+                    head = graph.getTrailSize();
+                    binaryHead = head;
+                    return cref;
+                }
+
+                graph.addImplicationNode(first, decisionLevel, cref);
+            }
+            watchers.shrink(j);
+        }
+
+        return ClauseArena.NO_CLAUSE;
+    }
+
+    /**
+     * Propagate all assignments on the trail through the binary implication lists.
+     * @param decisionLevel decision level of the implications
+     * @return true if there is no conflict, false otherwise
+     */
+    private boolean propagateBinary(int decisionLevel) {
+        while (binaryHead < graph.getTrailSize()) {
+            int literal = graph.getTrailLiteral(binaryHead++);
+            int falsified = LiteralUtil.negate(literal);
+            IntList implications = binaryWatches[falsified];
+            for (int i = 0; i < implications.size(); i += 2) {
+                int implied = implications.get(i);
+                byte value = graph.getValue(implied);
+                if (value == ImplicationGraph.TRUE) {
+                    continue;
+                }
+                if (value == ImplicationGraph.FALSE) {
+                    conflictedClause = implications.get(i + 1);
+                    conflictedLiteral = literal;
+                    head = graph.getTrailSize();
+                    binaryHead = head;
+                    return false;
+                }
+                graph.addImplicationNode(implied, decisionLevel, ImplicationGraph.binaryReason(falsified));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Move the queue heads back after the trail has been reverted by backtracking.
+     */
+    void backtrack() {
+        head = Math.min(head, graph.getTrailSize());
+        binaryHead = Math.min(binaryHead, graph.getTrailSize());
+    }
+
+    /**
+     * Update the watch lists after the arena has been compacted, dropping clauses that were deleted.
+     */
+    void relocate() {
+        for (IntList implications : binaryWatches) {
+            int j = 0;
+            for (int i = 0; i < implications.size(); i += 2) {
+                int cref = arena.relocate(implications.get(i + 1));
+                if (cref != ClauseArena.NO_CLAUSE) {
+                    implications.set(j++, implications.get(i));
+                    implications.set(j++, cref);
+                }
+            }
+            implications.shrink(j);
+        }
+        for (IntList watchers : watches) {
+            int j = 0;
+            for (int i = 0; i < watchers.size(); ++i) {
+                int cref = arena.relocate(watchers.get(i));
+                if (cref != ClauseArena.NO_CLAUSE) {
+                    watchers.set(j++, cref);
+                }
+            }
+            watchers.shrink(j);
+        }
+    }
+
+    int getConflictedClause() {
+        return conflictedClause;
+    }
+
+    int getConflictedLiteral() {
+        return conflictedLiteral;
+    }
+
+    void reset() {
+        for (int i = 0; i < watches.length; ++i) {
+            watches[i].clear();
+            binaryWatches[i].clear();
+        }
+        head = 0;
+        binaryHead = 0;
+        conflictedClause = ClauseArena.NO_CLAUSE;
+        conflictedLiteral = LiteralUtil.UNDEFINED;
+    }
+
+    private int levelOf(int literal) {
+        return graph.getDecisionLevel(LiteralUtil.getVariable(literal));
+    }
+}
@@ -1,6 +1,5 @@
 package solver;
 
-import datastruct.Variable;
 import db.ClauseDB;
 
 public class RandomSolver extends CDCLSolver {
@@ -9,7 +8,7 @@ public class RandomSolver extends CDCLSolver {
     }
 
     @Override
-    protected Variable pickBranchingVariable() {
+    protected int pickBranchingVariable() {
         super.pickBranchingVariable();
         return graph.getNextUnassignedVariable(true);
     }
@@ -0,0 +1,27 @@
+package solver;
+
+/**
+ * Policy that decides when the solver restarts, which backtracks to decision level 0 while keeping learnt clauses,
+ * variable activities and saved phases.
+ */
+interface RestartPolicy {
+
+    /**
+     * Notify the policy of a conflict.
+     * @param lbd literal block distance of the clause learnt from the conflict
+     */
+    void onConflict(int lbd);
+
+    /**
+     * Check if the solver should restart. Called when propagation has no conflict.
+     * @return true if the solver should restart now, false otherwise
+     */
+    boolean shouldRestart();
+
+    /**
+     * Notify the policy that the solver restarted.
+     */
+    void onRestart();
+
+    void reset();
+}
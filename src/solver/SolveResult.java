@@ -0,0 +1,60 @@
+package solver;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Result of an incremental solve. A satisfiable result holds the model, by variable name. An unsatisfiable result
+ * holds the assumptions that cannot hold together, which is empty if the CNF is unsatisfiable without assumptions.
+ */
+public class SolveResult {
+    public enum Status {
+        SAT,
+        UNSAT,
+        UNKNOWN,
+    }
+
+    private Status status;
+    private Map<String, Boolean> model;
+    private int[] failedAssumptions;
+
+    SolveResult(Status status, Map<String, Boolean> model, int[] failedAssumptions) {
+        this.status = status;
+        this.model = model;
+        this.failedAssumptions = failedAssumptions;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSatisfiable() {
+        return status == Status.SAT;
+    }
+
+    /**
+     * Get the value of each variable in the model.
+     * @return value of each variable by name, empty unless the result is satisfiable
+     */
+    public Map<String, Boolean> getModel() {
+        return Collections.unmodifiableMap(model);
+    }
+
+    /**
+     * Check if a literal is true in the model.
+     * @param literal literal in DIMACS notation
+     * @return true if the literal is true in the model, false otherwise
+     */
+    public boolean isTrue(int literal) {
+        Boolean value = model.get(String.valueOf(Math.abs(literal)));
+        return value != null && value == (literal > 0);
+    }
+
+    /**
+     * Get the assumptions that cannot hold together, as passed to {@code solve}.
+     * @return failed assumptions in DIMACS notation, empty unless the result is unsatisfiable
+     */
+    public int[] getFailedAssumptions() {
+        return failedAssumptions.clone();
+    }
+}
@@ -1,58 +1,41 @@
 package solver;
 
-import java.io.IOException;
-import java.util.Set;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-import callback.CSVLogger;
-import callback.ResultOutput;
-import datastruct.Clause;
-import datastruct.Variable;
+import datastruct.IntList;
 import db.ClauseDB;
+import util.LiteralUtil;
 
-abstract class Solver implements ISolver {
+abstract class Solver extends OutputSolver {
     static final String UNSAT = "UNSAT";
 
+    /**
+     * Result of an evaluation stopped by {@code interrupt} before it found an answer.
+     */
+    static final String UNKNOWN = "UNKNOWN";
+
     private int pickBranchingVariableCount;
 
-    private ResultOutput resultOutput;
-    private CSVLogger logger;
+    /**
+     * Counters reported per iteration, in the order they were registered.
+     */
+    private Map<String, Long> statistics;
+
+    private volatile boolean interrupted;
 
     public void reset() {
         pickBranchingVariableCount = 0;
+        statistics.replaceAll((name, value) -> 0L);
+        interrupted = false;
     }
 
-    public void setResultOutput(String outputPath) throws IOException {
-        resultOutput = new ResultOutput(outputPath);
-        resultOutput.initialize();
+    public void interrupt() {
+        interrupted = true;
     }
 
-    public void setStatisticsOutput(String outputPath) throws IOException {
-        logger = new CSVLogger(outputPath, ",");
-        logger.initialize();
-    }
-
-    public void writeResult(String result) throws IOException {
-        if (resultOutput == null) {
-            return;
-        }
-        resultOutput.write(result);
-    }
-
-    public void logStatistics(String[] data) throws IOException {
-        if (logger == null) {
-            return;
-        }
-        logger.logNext(data);
-    }
-
-    public void finalize() throws IOException {
-        if (resultOutput != null) {
-            resultOutput.close();
-        }
-
-        if (logger != null) {
-            logger.close();
-        }
+    boolean isInterrupted() {
+        return interrupted;
     }
 
     ClauseDB db;
@@ -60,13 +43,14 @@ abstract class Solver implements ISolver {
     Solver(ClauseDB db) {
         this.db = db;
         pickBranchingVariableCount = 0;
+        statistics = new LinkedHashMap<>();
     }
 
-    abstract boolean unitPropagation(Set<Clause> clauses);
+    abstract boolean unitPropagation(IntList clauses);
 
-    Variable pickBranchingVariable() {
+    int pickBranchingVariable() {
         pickBranchingVariableCount += 1;
-        return null;
+        return LiteralUtil.UNDEFINED;
     }
 
     abstract int conflictAnalysis();
@@ -76,4 +60,24 @@ abstract class Solver implements ISolver {
     public int getPickBranchingVariableCount() {
         return pickBranchingVariableCount;
     }
+
+    public long getUsedBytes() {
+        return db.getUsedBytes();
+    }
+
+    /**
+     * Register a counter so that it is reported even before it is first incremented.
+     * @param name name of the counter
+     */
+    void registerStatistic(String name) {
+        statistics.putIfAbsent(name, 0L);
+    }
+
+    void incrementStatistic(String name, long amount) {
+        statistics.merge(name, amount, Long::sum);
+    }
+
+    public Map<String, Long> getStatistics() {
+        return statistics;
+    }
 }
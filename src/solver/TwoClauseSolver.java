@@ -1,8 +1,6 @@
 package solver;
 
-import java.util.Map;
-
-import datastruct.Variable;
+import datastruct.IntList;
 import db.ClauseDB;
 
 public class TwoClauseSolver extends CDCLSolver {
@@ -11,9 +9,9 @@ public class TwoClauseSolver extends CDCLSolver {
     }
 
     @Override
-    protected Variable pickBranchingVariable() {
+    protected int pickBranchingVariable() {
         super.pickBranchingVariable();
-        Map<String, Integer> twoClauseLiteralCountMap = db.getTwoClauseLiteralCountMap();
-        return graph.getNextUnassignedVariable(twoClauseLiteralCountMap);
+        IntList twoClauseLiteralCounts = db.getTwoClauseLiteralCounts();
+        return graph.getNextUnassignedVariable(twoClauseLiteralCounts);
     }
 }
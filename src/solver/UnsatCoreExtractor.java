@@ -0,0 +1,150 @@
+package solver;
+
+import datastruct.ClauseArena;
+import datastruct.IntList;
+import db.ClauseDB;
+import util.LiteralUtil;
+
+/**
+ * Finds an unsatisfiable subset of the clauses of a CNF. Every clause gets a selector variable that it is disabled
+ * by, and the CNF is solved once with all selectors assumed true. If that is unsatisfiable, the final conflict
+ * analysis over the assumptions gives the selectors the refutation depends on, and so the clauses of the core.
+ * <p>
+ * Minimization then drops the clauses of the core one at a time on the same solver, so that clauses learnt in one
+ * call speed up the next. A clause whose removal makes the rest satisfiable is necessary, and its selector is fixed
+ * true for good. Otherwise the core shrinks to the failed assumptions of that call, which may drop more than the one
+ * clause. The result has no clause that can be removed on its own.
+ */
+public class UnsatCoreExtractor {
+    private ClauseDB db;
+    private IntList references;
+    private CDCLSolver solver;
+
+    /**
+     * Number of variables of the CNF. The selector of clause {@code i} is variable {@code numberOfVariables + i + 1}
+     * in DIMACS notation.
+     */
+    private int numberOfVariables;
+    private int callCount;
+
+    /**
+     * Create the extractor. The clauses are copied into a solver of the extractor, so the database is not changed.
+     * @param db clause database of the CNF, before preprocessing
+     */
+    public UnsatCoreExtractor(ClauseDB db) {
+        this.db = db;
+        references = new IntList(db.getClauseReferences());
+        numberOfVariables = db.getNumberOfLiterals();
+        solver = new VSDISSolver(new ClauseDB());
+
+        ClauseArena arena = db.getArena();
+        for (int i = 0; i < references.size(); ++i) {
+            int cref = references.get(i);
+            int[] literals = new int[arena.size(cref) + 1];
+            for (int k = 0; k < arena.size(cref); ++k) {
+                literals[k] = LiteralUtil.toDimacs(arena.literal(cref, k));
+            }
+            literals[literals.length - 1] = -selector(i);
+            solver.addClause(literals);
+        }
+    }
+
+    /**
+     * Find an unsatisfiable core of the CNF.
+     * @param minimize whether to remove clauses from the core until each remaining one is necessary
+     * @return references of the clauses in the core, or null if the CNF is satisfiable or the search was interrupted
+     */
+    public IntList extract(boolean minimize) {
+        int[] selectors = new int[references.size()];
+        for (int i = 0; i < selectors.length; ++i) {
+            selectors[i] = selector(i);
+        }
+        SolveResult result = solve(selectors);
+        if (result.getStatus() != SolveResult.Status.UNSAT) {
+            return null;
+        }
+
+        IntList core = new IntList();
+        IntList candidates = toList(result.getFailedAssumptions());
+        while (minimize && !candidates.isEmpty()) {
+            int candidate = candidates.removeLast();
+            result = solve(candidates.toArray());
+            if (result.getStatus() == SolveResult.Status.UNSAT) {
+                candidates = toList(result.getFailedAssumptions());
+            } else if (result.getStatus() == SolveResult.Status.SAT) {
+                core.add(candidate);
+                solver.addClause(candidate);
+            } else {
+                candidates.add(candidate);
+                break;
+            }
+        }
+        for (int i = 0; i < candidates.size(); ++i) {
+            core.add(candidates.get(i));
+        }
+
+        for (int i = 0; i < core.size(); ++i) {
+            core.set(i, references.get(core.get(i) - numberOfVariables - 1));
+        }
+        return core;
+    }
+
+    /**
+     * Stop the running search. The extraction returns null, or the core found so far while minimizing.
+     */
+    public void interrupt() {
+        solver.interrupt();
+    }
+
+    /**
+     * Get number of solver calls made by the extractor.
+     * @return number of calls
+     */
+    public int getCallCount() {
+        return callCount;
+    }
+
+    /**
+     * Return clauses of the CNF in DIMACS format, with the variable names of the CNF.
+     * @param core references of the clauses
+     * @return clauses in DIMACS format, with a problem line counting the variables that occur in them
+     */
+    public String coreToString(IntList core) {
+        ClauseArena arena = db.getArena();
+        StringBuilder clauses = new StringBuilder();
+        boolean[] occurs = new boolean[numberOfVariables];
+        int variableCount = 0;
+        for (int i = 0; i < core.size(); ++i) {
+            int cref = core.get(i);
+            for (int k = 0; k < arena.size(cref); ++k) {
+                int literal = arena.literal(cref, k);
+                int variable = LiteralUtil.getVariable(literal);
+                if (!occurs[variable]) {
+                    occurs[variable] = true;
+                    ++variableCount;
+                }
+                clauses.append(LiteralUtil.isPositive(literal) ? "" : "-").append(db.getVariableName(variable))
+                        .append(' ');
+            }
+            clauses.append("0\n");
+        }
+        return String.format("p cnf %d %d\n", variableCount, core.size()) + clauses;
+    }
+
+    private SolveResult solve(int[] assumptions) {
+        ++callCount;
+        return solver.solve(assumptions);
+    }
+
+    private int selector(int clause) {
+        return numberOfVariables + clause + 1;
+    }
+
+    private static IntList toList(int[] values) {
+        IntList list = new IntList(values.length);
+        for (int value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
@@ -1,136 +1,116 @@
 package solver;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-
-import config.Config;
-import datastruct.Clause;
-import datastruct.Variable;
+import java.util.Arrays;
+
+import datastruct.IntList;
+import datastruct.VariableHeap;
 import db.ClauseDB;
+import util.LiteralUtil;
 
 /**
- * Conflict-History solver with conflict history search for pick branching variable
+ * Conflict-History solver with conflict history search for pick branching variable. Variables are picked by EVSIDS:
+ * variables of every learnt clause are bumped by an increment that grows after each conflict, which decays older
+ * bumps relative to new ones without touching every activity.
  */
 public class VSDISSolver extends CDCLSolver {
 
-    private static final float ALPHA = 0.4f;
+    private static final double DECAY = 0.95;
+
+    /**
+     * Activities are rescaled when one exceeds this limit, to stay within the range of a double.
+     */
+    private static final double RESCALE_LIMIT = 1e100;
 
-    private Map<String, Float> variableScore;
-    private List<String> branchingHeuristicsSortedList;
+    private double[] activity;
+    private double increment;
+
+    /**
+     * Heap of variables ordered by activity. Assigned variables may stay in the heap and are skipped when picking;
+     * unassigned variables are always in the heap.
+     */
+    private VariableHeap order;
 
     public VSDISSolver(ClauseDB db) {
         super(db);
-        variableScore = new HashMap<>();
-        branchingHeuristicsSortedList = new ArrayList<>();
+        activity = new double[db.getNumberOfLiterals()];
+        order = new VariableHeap(activity);
         initialize();
     }
 
     private void initialize() {
-        db.getAllLiterals().forEach(l -> {
-            variableScore.put(l, 0f);
-            branchingHeuristicsSortedList.add(l);
-        });
+        Arrays.fill(activity, 0);
+        increment = 1;
+        order.clear();
+        for (int v = 0; v < db.getNumberOfLiterals(); ++v) {
+            order.insert(v);
+        }
     }
 
     @Override
-    public String evaluate() {
-        // If unit propagation failed before even evaluation, return UNSAT
-        if (!unitPropagation(db.getAllClauses())) {
-            return UNSAT;
-        }
-
-        while (!allVariablesAssigned()) {
-            Variable decision = pickBranchingVariable();
-            if (decision == null) {
-                return UNSAT;
-            }
-
-            decisionLevel += 1;
-
-            // Store decision
-            graph.addDecisionNode(decision, decisionLevel);
-
-            // Propagation does not result in any conflict, continue
-            if (implicationPropagation(db.getAllClauses(), decision)) {
-                continue;
-            }
-
-            if (Config.logging == Config.Logging.DEBUG) {
-                System.out.println("Decision made during conflict: " + decision);
-                System.out.println("Assignment when conflict:");
-                System.out.println(graph.assignmentsToString());
-                System.out.println(graph.edgesToString());
-                System.out.println();
-
-                System.out.println("Conflicting clause: " + conflictedClause.toString());
-                System.out.println("Conflicting assignment: " + conflictedVariable.toString());
-            }
-
-            // Perform conflict analysis to learn new clause and level to backtrack to
-            int backtrackLevel = conflictAnalysis();
-
-            if (backtrackLevel == -1) {
-                return UNSAT;
+    int pickBranchingVariable() {
+        while (!order.isEmpty()) {
+            int v = order.removeMax();
+            if (!graph.isAssigned(v)) {
+                return graph.getDecisionLiteral(v);
             }
-
-            backtrack(backtrackLevel);
-
-            if (!forceSatisfyClause(db.getLastLearntClause())) {
-                return UNSAT;
-            }
-            db.clearLastLearntClause();
-            decayAllVariableActivities();
         }
+        return LiteralUtil.UNDEFINED;
+    }
 
-        return graph.assignmentsToString();
+    @Override
+    int addLearntClause(IntList learntClause) {
+        for (int i = 0; i < learntClause.size(); ++i) {
+            bumpVariableActivity(LiteralUtil.getVariable(learntClause.get(i)));
+        }
+        decayAllVariableActivities();
+        return super.addLearntClause(learntClause);
     }
 
     @Override
-    Variable pickBranchingVariable() {
-        Set<String> unassignedVariables = graph.getUnassignedVariables();
-        String variableToAssign = null;
-        float maxScore = -1;
-        for (String v : unassignedVariables) {
-            if (variableToAssign == null) {
-                variableToAssign = v;
-                maxScore = variableScore.get(v);
-                continue;
+    void backtrack(int level) {
+        // Variables unassigned by backtracking become candidates again
+        for (int i = graph.getTrailSize() - 1; i >= 0; --i) {
+            int v = LiteralUtil.getVariable(graph.getTrailLiteral(i));
+            if (graph.getDecisionLevel(v) <= level) {
+                break;
             }
-            float score = variableScore.get(v);
-            if (score > maxScore) {
-                variableToAssign = v;
-                maxScore = score;
-            }
-        }
-        if (variableToAssign == null) {
-            return null;
+            order.insert(v);
         }
-        return new Variable(variableToAssign, true);
+        super.backtrack(level);
     }
 
-    @Override
-    void addLearntClause(Clause learntClause) {
-        learntClause.getLiterals().forEach(l -> {
-            float existingScore = variableScore.get(l.getName());
-            variableScore.replace(l.getName(), existingScore + 1);
-        });
-        branchingHeuristicsSortedList.sort((first, second)
-                -> Float.compare(variableScore.get(first), variableScore.get(second)) * -1);
-        super.addLearntClause(learntClause);
+    private void bumpVariableActivity(int variable) {
+        activity[variable] += increment;
+        if (activity[variable] > RESCALE_LIMIT) {
+            for (int v = 0; v < activity.length; ++v) {
+                activity[v] *= 1 / RESCALE_LIMIT;
+            }
+            increment *= 1 / RESCALE_LIMIT;
+        }
+        order.increase(variable);
     }
 
+    /**
+     * Decay all activities by growing the increment of future bumps instead of scaling every activity down.
+     */
     private void decayAllVariableActivities() {
-        variableScore.forEach((l, f) -> f = f * ALPHA);
+        increment /= DECAY;
+    }
+
+    @Override
+    void growVariables() {
+        super.growVariables();
+        int size = activity.length;
+        activity = Arrays.copyOf(activity, db.getNumberOfLiterals());
+        order.grow(activity);
+        for (int v = size; v < activity.length; ++v) {
+            order.insert(v);
+        }
     }
 
     @Override
     public void reset() {
         super.reset();
-        variableScore.clear();
-        branchingHeuristicsSortedList.clear();
         initialize();
     }
 }
@@ -0,0 +1,42 @@
+package util;
+
+/**
+ * Utility for integer encoded literals. Variables are dense indices starting from 0 and a literal of variable
+ * {@code v} is encoded as {@code 2 * v} if positive and {@code 2 * v + 1} if negative.
+ */
+public class LiteralUtil {
+    /**
+     * Marker for the absence of a literal.
+     */
+    public static final int UNDEFINED = -1;
+
+    public static int toLiteral(int variable, boolean isPositive) {
+        return (variable << 1) | (isPositive ? 0 : 1);
+    }
+
+    public static int getVariable(int literal) {
+        return literal >> 1;
+    }
+
+    public static boolean isPositive(int literal) {
+        return (literal & 1) == 0;
+    }
+
+    public static int negate(int literal) {
+        return literal ^ 1;
+    }
+
+    /**
+     * Convert a DIMACS literal, where variables start from 1 and negative literals have a minus sign.
+     * @param dimacs DIMACS literal
+     * @return encoded literal
+     */
+    public static int fromDimacs(int dimacs) {
+        return toLiteral(Math.abs(dimacs) - 1, dimacs > 0);
+    }
+
+    public static int toDimacs(int literal) {
+        int variable = getVariable(literal) + 1;
+        return isPositive(literal) ? variable : -variable;
+    }
+}